@@ -0,0 +1,242 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.skywalking.apm.plugin.couchbase.v76;
+
+import org.apache.skywalking.apm.agent.core.boot.PluginConfig;
+
+public class CouchbasePluginConfig {
+    public enum DocumentIdMode {
+        FULL, PATTERN, HASH, OFF
+    }
+
+    public static class Plugin {
+        @PluginConfig(root = CouchbasePluginConfig.class)
+        public static class Couchbase {
+            /**
+             * If true, literals in N1QL statements are replaced by {@code ?} before the statement is tagged as
+             * {@code db.statement}, and a stable fingerprint of the normalized statement is tagged as
+             * {@code db.statement.fingerprint}.
+             */
+            public static boolean NORMALIZE_STATEMENT = true;
+
+            /**
+             * Maximum number of distinct raw statements whose normalized form is kept in memory.
+             */
+            public static int STATEMENT_CACHE_SIZE = 1024;
+
+            /**
+             * How document keys are tagged as {@code db.document.id}: {@code FULL} tags the (truncated) key,
+             * {@code PATTERN} tags its shape, e.g. {@code order::{n}::{uuid}}, {@code HASH} tags a fixed size hash of
+             * the key and {@code OFF} does not tag it at all.
+             */
+            public static DocumentIdMode DOCUMENT_ID_MODE = DocumentIdMode.FULL;
+
+            /**
+             * Number of slots in the table of learned key patterns used by the {@code PATTERN} mode.
+             */
+            public static int DOCUMENT_ID_PATTERN_CACHE_SIZE = 256;
+
+            /**
+             * Maximum number of spans per second created for {@code get} calls on one collection. Calls over the
+             * limit are not traced, unless they fail. A negative value disables the limit.
+             */
+            public static int SAMPLE_RATE_LIMIT_GET = -1;
+
+            /**
+             * Same as {@link #SAMPLE_RATE_LIMIT_GET}, for {@code upsert} calls.
+             */
+            public static int SAMPLE_RATE_LIMIT_UPSERT = -1;
+
+            /**
+             * Same as {@link #SAMPLE_RATE_LIMIT_GET}, for {@code insert} calls.
+             */
+            public static int SAMPLE_RATE_LIMIT_INSERT = -1;
+
+            /**
+             * Same as {@link #SAMPLE_RATE_LIMIT_GET}, for {@code replace} calls.
+             */
+            public static int SAMPLE_RATE_LIMIT_REPLACE = -1;
+
+            /**
+             * Same as {@link #SAMPLE_RATE_LIMIT_GET}, for {@code remove} calls.
+             */
+            public static int SAMPLE_RATE_LIMIT_REMOVE = -1;
+
+            /**
+             * Same as {@link #SAMPLE_RATE_LIMIT_GET}, for {@code Cluster#query} calls on one cluster.
+             */
+            public static int SAMPLE_RATE_LIMIT_QUERY = -1;
+
+            /**
+             * Number of {@code AsyncCollection} calls of the same operation against the same collection, issued under
+             * the same parent span, that are traced on their own. Further calls are collapsed into a single aggregated
+             * span. A value of 0 or less disables aggregation.
+             */
+            public static int AGGREGATION_THRESHOLD = 0;
+
+            /**
+             * Time window, starting at the first call, in which calls are counted against
+             * {@link #AGGREGATION_THRESHOLD}.
+             */
+            public static long AGGREGATION_WINDOW_MS = 1000;
+
+            /**
+             * If true, the latency, calls and errors of every key-value operation and query are recorded, whether
+             * traced or not, and reported as meters.
+             */
+            public static boolean OPERATION_METRICS = true;
+
+            /**
+             * Interval at which the recorded operation metrics are exported to the agent meter service.
+             */
+            public static long METER_FLUSH_INTERVAL_MS = 10000;
+
+            /**
+             * If true, the request tracer of the SDK is wrapped so that the encoding, dispatch, server and queue time
+             * it measures are tagged on the exit span of traced operations, even when the SDK uses its own internal
+             * tracer. The SDK then no longer sees an internal tracer and records span attributes on every request,
+             * traced or not. A tracer configured by the application, such as OpenTelemetry, is always wrapped since
+             * the SDK already does that work for it.
+             */
+            public static boolean TRACE_REQUEST_PHASES = false;
+
+            /**
+             * Body size, in bytes, from which a key-value request or response is counted as an oversized document.
+             */
+            public static int OVERSIZED_DOCUMENT_BYTES = 1024 * 1024;
+
+            /**
+             * If true, the wall and CPU time spent in transcoders and JSON serializers is recorded per document type.
+             */
+            public static boolean CODEC_METRICS = true;
+
+            /**
+             * Maximum number of document types with their own codec meters, the meters of the following types are
+             * tagged {@code other}.
+             */
+            public static int CODEC_METRIC_MAX_TYPES = 100;
+
+            /**
+             * If true, the endpoints of every node are sampled in the background and their state, in-flight and
+             * pending requests reported as gauges.
+             */
+            public static boolean POOL_METRICS = true;
+
+            /**
+             * Interval at which the endpoint pools are sampled.
+             */
+            public static long POOL_SAMPLE_INTERVAL_MS = 10000;
+
+            /**
+             * If true, blocking {@code Collection} calls only record their start time, and their span is created once
+             * they complete, only if they took longer than their threshold or failed. Such spans are back-dated to
+             * the start of the call, but do not carry the request phases of the SDK nor have child spans.
+             */
+            public static boolean DEFERRED_SPANS = false;
+
+            /**
+             * Duration from which a deferred call is traced, unless overridden for its operation below. 0 traces
+             * every call.
+             */
+            public static long DEFERRED_SPAN_THRESHOLD_MS = 1;
+
+            /**
+             * Same as {@link #DEFERRED_SPAN_THRESHOLD_MS}, for {@code get} calls. A negative value uses the default.
+             */
+            public static long DEFERRED_SPAN_THRESHOLD_MS_GET = -1;
+
+            /**
+             * Same as {@link #DEFERRED_SPAN_THRESHOLD_MS_GET}, for {@code upsert} calls.
+             */
+            public static long DEFERRED_SPAN_THRESHOLD_MS_UPSERT = -1;
+
+            /**
+             * Same as {@link #DEFERRED_SPAN_THRESHOLD_MS_GET}, for {@code insert} calls.
+             */
+            public static long DEFERRED_SPAN_THRESHOLD_MS_INSERT = -1;
+
+            /**
+             * Same as {@link #DEFERRED_SPAN_THRESHOLD_MS_GET}, for {@code replace} calls.
+             */
+            public static long DEFERRED_SPAN_THRESHOLD_MS_REPLACE = -1;
+
+            /**
+             * Same as {@link #DEFERRED_SPAN_THRESHOLD_MS_GET}, for {@code remove} calls.
+             */
+            public static long DEFERRED_SPAN_THRESHOLD_MS_REMOVE = -1;
+
+            /**
+             * If true, the document keys of key-value calls are counted per collection in a fixed size sketch, and
+             * the hottest keys, or key patterns in {@code PATTERN} document id mode, are written to the agent log
+             * every {@link #HOT_KEY_REPORT_INTERVAL_MS}.
+             */
+            public static boolean HOT_KEYS = false;
+
+            /**
+             * Number of hottest keys reported per collection.
+             */
+            public static int HOT_KEY_TOP_K = 10;
+
+            /**
+             * Width of the sketch of a collection, which holds 4 rows of this many 8 byte counters, 32 KiB by
+             * default.
+             */
+            public static int HOT_KEY_SKETCH_WIDTH = 1024;
+
+            /**
+             * One call out of this many is counted, weighted accordingly. 1 counts every call.
+             */
+            public static int HOT_KEY_SAMPLE_RATE = 1;
+
+            /**
+             * Interval over which hot keys are counted and reported.
+             */
+            public static long HOT_KEY_REPORT_INTERVAL_MS = 60000;
+
+            /**
+             * If true, the N1QL statements run adhoc or with the {@code request_plus} scan consistency are counted by
+             * fingerprint, and those run at least {@link #QUERY_ADVISOR_MIN_EXECUTIONS} times over
+             * {@link #QUERY_ADVISOR_INTERVAL_MS} are written to the agent log.
+             */
+            public static boolean QUERY_ADVISOR = true;
+
+            /**
+             * Executions over an interval from which a statement is reported.
+             */
+            public static long QUERY_ADVISOR_MIN_EXECUTIONS = 100;
+
+            /**
+             * Interval over which statements are counted and reported.
+             */
+            public static long QUERY_ADVISOR_INTERVAL_MS = 60000;
+
+            /**
+             * Maximum number of distinct statements counted over an interval.
+             */
+            public static int QUERY_ADVISOR_TABLE_SIZE = 1000;
+
+            /**
+             * Time after which the span of a reactive query, analytics or search call whose result was emitted, but
+             * whose rows and metadata were never subscribed, is finished. Zero or less disables the sweep, leaving such
+             * spans open.
+             */
+            public static long ROW_STREAM_TIMEOUT_MS = 75000;
+        }
+    }
+}
@@ -25,14 +25,15 @@ import org.apache.skywalking.apm.agent.core.plugin.interceptor.InstanceMethodsIn
 import org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance.ClassInstanceMethodsEnhancePluginDefine;
 import org.apache.skywalking.apm.agent.core.plugin.match.ClassMatch;
 
-import static net.bytebuddy.matcher.ElementMatchers.named;
 import static org.apache.skywalking.apm.agent.core.plugin.bytebuddy.ArgumentTypeNameMatch.takesArgumentWithType;
 import static org.apache.skywalking.apm.agent.core.plugin.match.NameMatch.byName;
 
 /**
- * Enhance {@code com.couchbase.client.core.CoreContext} instance, and intercept {@code
- * com.couchbase.client.core.CoreContext#someMethod()}, this is the only way to get
- * OperationExecutor which is unified entrance of execute couchbase command. Inject the remotePeer into enhanced OperationExecutor.
+ * Enhance {@code com.couchbase.client.core.CoreContext} instance, and intercept its constructor {@code
+ * CoreContext(Core, long, CoreEnvironment, Authenticator)}. There is one context per {@code Core}, so the seed nodes of
+ * the connection string are resolved into the remote peer once and kept in the dynamic field of the context, where
+ * every span creation reads it. The constructor also runs for subclasses of the context, such as {@code RequestContext},
+ * which the interceptor ignores.
  * <p>
  * support: 7.6.0 or higher
  */
@@ -60,7 +61,7 @@ public class CouchbaseClientDelegateInstrumentation extends ClassInstanceMethods
             new ConstructorInterceptPoint() {
                 @Override
                 public ElementMatcher<MethodDescription> getConstructorMatcher() {
-                    return takesArgumentWithType(0, "com.couchbase.client.core.env.CoreEnvironment");
+                    return takesArgumentWithType(2, "com.couchbase.client.core.env.CoreEnvironment");
                 }
 
                 @Override
@@ -73,24 +74,7 @@ public class CouchbaseClientDelegateInstrumentation extends ClassInstanceMethods
 
     @Override
     public InstanceMethodsInterceptPoint[] getInstanceMethodsInterceptPoints() {
-        return new InstanceMethodsInterceptPoint[] {
-            new InstanceMethodsInterceptPoint() {
-                @Override
-                public ElementMatcher<MethodDescription> getMethodsMatcher() {
-                    return named("someMethod"); // TODO: Replace with actual method to intercept
-                }
-
-                @Override
-                public String getMethodsInterceptor() {
-                    return INTERCEPTOR_CLASS;
-                }
-
-                @Override
-                public boolean isOverrideArgs() {
-                    return false;
-                }
-            }
-        };
+        return new InstanceMethodsInterceptPoint[0];
     }
 
 }
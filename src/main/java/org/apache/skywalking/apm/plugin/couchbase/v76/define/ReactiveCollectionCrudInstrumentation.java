@@ -37,7 +37,7 @@ public class ReactiveCollectionCrudInstrumentation extends ClassInstanceMethodsE
     }
 
     private static final String ENHANCE_CLASS = "com.couchbase.client.java.ReactiveCollection";
-    private static final String INTERCEPTOR_CLASS = "org.apache.skywalking.apm.plugin.couchbase.v76.interceptor.AsyncCollectionCrudInterceptor";
+    private static final String INTERCEPTOR_CLASS = "org.apache.skywalking.apm.plugin.couchbase.v76.interceptor.ReactiveCollectionCrudInterceptor";
 
     @Override
     protected ClassMatch enhanceClass() {
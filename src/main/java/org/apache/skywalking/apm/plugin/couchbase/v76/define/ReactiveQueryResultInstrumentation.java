@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.skywalking.apm.plugin.couchbase.v76.define;
+
+import net.bytebuddy.description.method.MethodDescription;
+import net.bytebuddy.matcher.ElementMatcher;
+import org.apache.skywalking.apm.agent.core.plugin.interceptor.ConstructorInterceptPoint;
+import org.apache.skywalking.apm.agent.core.plugin.interceptor.InstanceMethodsInterceptPoint;
+import org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance.ClassInstanceMethodsEnhancePluginDefine;
+import org.apache.skywalking.apm.agent.core.plugin.match.ClassMatch;
+
+import static org.apache.skywalking.apm.agent.core.plugin.bytebuddy.ArgumentTypeNameMatch.takesArgumentWithType;
+import static org.apache.skywalking.apm.agent.core.plugin.match.MultiClassNameMatch.byMultiClassMatch;
+
+/**
+ * Enhance {@code com.couchbase.client.java.query.ReactiveQueryResult}, {@code
+ * com.couchbase.client.java.analytics.ReactiveAnalyticsResult} and {@code
+ * com.couchbase.client.java.search.result.ReactiveSearchResult} instances, and intercept their constructors {@code
+ * ReactiveQueryResult(CoreReactiveQueryResult, JsonSerializer)}, {@code ReactiveAnalyticsResult(AnalyticsResponse,
+ * JsonSerializer)} and {@code ReactiveSearchResult(CoreReactiveSearchResult, JsonSerializer)} to remember the core
+ * result whose rows the application will stream.
+ */
+public class ReactiveQueryResultInstrumentation extends ClassInstanceMethodsEnhancePluginDefine {
+
+    private static final String ENHANCE_QUERY_CLASS = "com.couchbase.client.java.query.ReactiveQueryResult";
+
+    private static final String ENHANCE_ANALYTICS_CLASS = "com.couchbase.client.java.analytics.ReactiveAnalyticsResult";
+
+    private static final String ENHANCE_SEARCH_CLASS = "com.couchbase.client.java.search.result.ReactiveSearchResult";
+
+    private static final String INTERCEPTOR_CLASS = "org.apache.skywalking.apm.plugin.couchbase.v76.interceptor.ReactiveQueryResultInterceptor";
+
+    @Override
+    protected ClassMatch enhanceClass() {
+        return byMultiClassMatch(ENHANCE_QUERY_CLASS, ENHANCE_ANALYTICS_CLASS, ENHANCE_SEARCH_CLASS);
+    }
+
+    @Override
+    public ConstructorInterceptPoint[] getConstructorsInterceptPoints() {
+        return new ConstructorInterceptPoint[] {
+            new ConstructorInterceptPoint() {
+                @Override
+                public ElementMatcher<MethodDescription> getConstructorMatcher() {
+                    // The only constructor of each class, taking the core result and the serializer
+                    return takesArgumentWithType(1, "com.couchbase.client.java.codec.JsonSerializer");
+                }
+
+                @Override
+                public String getConstructorInterceptor() {
+                    return INTERCEPTOR_CLASS;
+                }
+            }
+        };
+    }
+
+    @Override
+    public InstanceMethodsInterceptPoint[] getInstanceMethodsInterceptPoints() {
+        return new InstanceMethodsInterceptPoint[0];
+    }
+
+}
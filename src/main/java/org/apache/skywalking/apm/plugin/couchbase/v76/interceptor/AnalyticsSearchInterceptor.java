@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.skywalking.apm.plugin.couchbase.v76.interceptor;
+
+import com.couchbase.client.java.Scope;
+import org.apache.skywalking.apm.agent.core.context.ContextManager;
+import org.apache.skywalking.apm.agent.core.context.trace.AbstractSpan;
+import org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance.EnhancedInstance;
+import org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance.InstanceMethodsAroundInterceptor;
+import org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance.MethodInterceptResult;
+import org.apache.skywalking.apm.plugin.couchbase.v76.support.CouchbaseInstanceState;
+import org.apache.skywalking.apm.plugin.couchbase.v76.support.CouchbaseSpanHelper;
+import org.apache.skywalking.apm.plugin.couchbase.v76.support.InvocationFrames;
+import org.apache.skywalking.apm.plugin.couchbase.v76.support.OperationDescriptor;
+import org.apache.skywalking.apm.plugin.couchbase.v76.support.OperationMetrics;
+
+import java.lang.reflect.Method;
+
+/**
+ * Traces the blocking analytics and search calls of a {@code Cluster} or {@code Scope}. The rows are buffered before
+ * the result is returned, so the span is tagged with the metrics reported by the service.
+ */
+public class AnalyticsSearchInterceptor implements InstanceMethodsAroundInterceptor {
+    private static final OperationDescriptor.Registry CLUSTER_DESCRIPTORS = new OperationDescriptor.Registry("Couchbase/Cluster/");
+    private static final OperationDescriptor.Registry SCOPE_DESCRIPTORS = new OperationDescriptor.Registry("Couchbase/Scope/");
+
+    @Override
+    public void beforeMethod(EnhancedInstance objInst, Method method, Object[] allArguments, Class<?>[] argumentsTypes, MethodInterceptResult result) {
+        InvocationFrames frames = InvocationFrames.current();
+        boolean nested = frames.isNested();
+        frames.enter(false);
+        OperationDescriptor descriptor = descriptorOf(objInst, method);
+        if (nested || !CouchbaseInstanceState.isSampled(objInst, descriptor)) {
+            return;
+        }
+        AbstractSpan span = ContextManager.createExitSpan(descriptor.getOperationName(), CouchbaseInstanceState.peerOf(objInst));
+        frames.markTraced();
+        tagSpan(span, descriptor, allArguments);
+    }
+
+    @Override
+    public Object afterMethod(EnhancedInstance objInst, Method method, Object[] allArguments, Class<?>[] argumentsTypes, Object ret) {
+        InvocationFrames frames = InvocationFrames.current();
+        try {
+            if (frames.isOutermost()) {
+                OperationMetrics metrics = CouchbaseInstanceState.metricsOf(objInst, descriptorOf(objInst, method));
+                if (metrics != null) {
+                    metrics.record(System.nanoTime() - frames.getStartNanos(), frames.isFailed());
+                }
+            }
+            if (frames.isTraced() && frames.isOutermost()) {
+                CouchbaseSpanHelper.tagResultMetaData(ContextManager.activeSpan(), ret);
+            }
+        } finally {
+            if (frames.exit()) {
+                ContextManager.stopSpan();
+            }
+        }
+        return ret;
+    }
+
+    @Override
+    public void handleMethodException(EnhancedInstance objInst, Method method, Object[] allArguments, Class<?>[] argumentsTypes, Throwable t) {
+        InvocationFrames frames = InvocationFrames.current();
+        frames.markFailed();
+        if (frames.isTraced()) {
+            CouchbaseSpanHelper.logError(ContextManager.activeSpan(), t);
+        } else if (frames.isOutermost()) {
+            // Not sampled, failures are traced anyway
+            CouchbaseSpanHelper.logError(createSpan(objInst, descriptorOf(objInst, method), allArguments), t);
+            ContextManager.stopSpan();
+        }
+    }
+
+    private static OperationDescriptor descriptorOf(EnhancedInstance objInst, Method method) {
+        return objInst instanceof Scope ? SCOPE_DESCRIPTORS.of(method) : CLUSTER_DESCRIPTORS.of(method);
+    }
+
+    private static AbstractSpan createSpan(EnhancedInstance objInst, OperationDescriptor descriptor, Object[] allArguments) {
+        AbstractSpan span = ContextManager.createExitSpan(descriptor.getOperationName(), CouchbaseInstanceState.peerOf(objInst));
+        tagSpan(span, descriptor, allArguments);
+        return span;
+    }
+
+    private static void tagSpan(AbstractSpan span, OperationDescriptor descriptor, Object[] allArguments) {
+        CouchbaseSpanHelper.tagServiceStatement(span, descriptor, CouchbaseSpanHelper.serviceStatementOf(descriptor, allArguments, true));
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.skywalking.apm.plugin.couchbase.v76.interceptor;
+
+import com.couchbase.client.java.AsyncScope;
+import org.apache.skywalking.apm.agent.core.context.ContextManager;
+import org.apache.skywalking.apm.agent.core.context.ContextSnapshot;
+import org.apache.skywalking.apm.agent.core.context.trace.AbstractSpan;
+import org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance.EnhancedInstance;
+import org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance.InstanceMethodsAroundInterceptor;
+import org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance.MethodInterceptResult;
+import org.apache.skywalking.apm.plugin.couchbase.v76.support.CouchbaseAsyncSpanFinisher;
+import org.apache.skywalking.apm.plugin.couchbase.v76.support.CouchbaseInstanceState;
+import org.apache.skywalking.apm.plugin.couchbase.v76.support.CouchbaseSpanHelper;
+import org.apache.skywalking.apm.plugin.couchbase.v76.support.InvocationFrames;
+import org.apache.skywalking.apm.plugin.couchbase.v76.support.OperationDescriptor;
+import org.apache.skywalking.apm.plugin.couchbase.v76.support.OperationMetrics;
+import org.apache.skywalking.apm.plugin.couchbase.v76.support.UnsampledErrorRecorder;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Traces the analytics and search calls of an {@code AsyncCluster} or {@code AsyncScope}. Their futures complete once
+ * all the rows are buffered, so the span is finished when the future completes and tagged with the metrics reported
+ * by the service. When the future of an unsampled search call fails, the error span only carries the index name, so
+ * that the request is not serialized to JSON for every call.
+ */
+public class AsyncAnalyticsSearchInterceptor implements InstanceMethodsAroundInterceptor {
+    private static final OperationDescriptor.Registry CLUSTER_DESCRIPTORS = new OperationDescriptor.Registry("Couchbase/AsyncCluster/");
+    private static final OperationDescriptor.Registry SCOPE_DESCRIPTORS = new OperationDescriptor.Registry("Couchbase/AsyncScope/");
+
+    @Override
+    public void beforeMethod(EnhancedInstance objInst, Method method, Object[] allArguments, Class<?>[] argumentsTypes, MethodInterceptResult result) {
+        InvocationFrames frames = InvocationFrames.current();
+        boolean nested = frames.isNested();
+        frames.enter(false);
+        OperationDescriptor descriptor = descriptorOf(objInst, method);
+        if (nested || !CouchbaseInstanceState.isSampled(objInst, descriptor)) {
+            return;
+        }
+        AbstractSpan span = ContextManager.createExitSpan(descriptor.getOperationName(), CouchbaseInstanceState.peerOf(objInst));
+        frames.markTraced();
+        CouchbaseSpanHelper.tagServiceStatement(span, descriptor, CouchbaseSpanHelper.serviceStatementOf(descriptor, allArguments, true));
+    }
+
+    @Override
+    public Object afterMethod(EnhancedInstance objInst, Method method, Object[] allArguments, Class<?>[] argumentsTypes, Object ret) {
+        InvocationFrames frames = InvocationFrames.current();
+        long startNanos = frames.getStartNanos();
+        OperationDescriptor descriptor;
+        OperationMetrics metrics = null;
+        boolean traced;
+        try {
+            descriptor = descriptorOf(objInst, method);
+            if (frames.isOutermost()) {
+                metrics = CouchbaseInstanceState.metricsOf(objInst, descriptor);
+                if (metrics != null && frames.isFailed()) {
+                    metrics.record(System.nanoTime() - startNanos, true);
+                    metrics = null;
+                }
+            }
+        } finally {
+            traced = frames.exit();
+        }
+        if (!traced) {
+            if (!frames.isNested() && ret instanceof CompletableFuture) {
+                // Not sampled, failures are traced anyway
+                ContextSnapshot snapshot = ContextManager.isActive() ? ContextManager.capture() : null;
+                ((CompletableFuture<?>) ret).whenComplete(UnsampledErrorRecorder.forQuery(
+                    descriptor, CouchbaseInstanceState.peerOf(objInst), CouchbaseSpanHelper.serviceStatementOf(descriptor, allArguments, false),
+                    snapshot, metrics, startNanos));
+            }
+            return ret;
+        }
+        if (ret instanceof CompletableFuture) {
+            AbstractSpan span = ContextManager.activeSpan();
+            span.prepareForAsync();
+            ContextManager.stopSpan();
+            ((CompletableFuture<?>) ret).whenComplete(new CouchbaseAsyncSpanFinisher(span, metrics, startNanos));
+            return ret;
+        }
+        ContextManager.stopSpan();
+        return ret;
+    }
+
+    @Override
+    public void handleMethodException(EnhancedInstance objInst, Method method, Object[] allArguments, Class<?>[] argumentsTypes, Throwable t) {
+        InvocationFrames frames = InvocationFrames.current();
+        if (frames.isTraced()) {
+            frames.markFailed();
+            CouchbaseSpanHelper.logError(ContextManager.activeSpan(), t);
+        } else if (frames.isOutermost()) {
+            frames.markFailed();
+            OperationDescriptor descriptor = descriptorOf(objInst, method);
+            UnsampledErrorRecorder.recordQuery(descriptor, CouchbaseInstanceState.peerOf(objInst),
+                CouchbaseSpanHelper.serviceStatementOf(descriptor, allArguments, true), null, t);
+        }
+    }
+
+    private static OperationDescriptor descriptorOf(EnhancedInstance objInst, Method method) {
+        return objInst instanceof AsyncScope ? SCOPE_DESCRIPTORS.of(method) : CLUSTER_DESCRIPTORS.of(method);
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.skywalking.apm.plugin.couchbase.v76.interceptor;
+
+import com.couchbase.client.java.query.QueryOptions;
+import org.apache.skywalking.apm.agent.core.context.ContextManager;
+import org.apache.skywalking.apm.agent.core.context.ContextSnapshot;
+import org.apache.skywalking.apm.agent.core.context.trace.AbstractSpan;
+import org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance.EnhancedInstance;
+import org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance.InstanceMethodsAroundInterceptor;
+import org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance.MethodInterceptResult;
+import org.apache.skywalking.apm.plugin.couchbase.v76.support.CouchbaseAsyncSpanFinisher;
+import org.apache.skywalking.apm.plugin.couchbase.v76.support.CouchbaseInstanceState;
+import org.apache.skywalking.apm.plugin.couchbase.v76.support.CouchbaseSpanHelper;
+import org.apache.skywalking.apm.plugin.couchbase.v76.support.InvocationFrames;
+import org.apache.skywalking.apm.plugin.couchbase.v76.support.OperationDescriptor;
+import org.apache.skywalking.apm.plugin.couchbase.v76.support.OperationMetrics;
+import org.apache.skywalking.apm.plugin.couchbase.v76.support.QueryAdvisor;
+import org.apache.skywalking.apm.plugin.couchbase.v76.support.UnsampledErrorRecorder;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * {@code AsyncCluster#query} buffers all the rows before completing its future, so the span is finished when the
+ * future completes and tagged with the query metadata.
+ */
+public class AsyncClusterQueryInterceptor implements InstanceMethodsAroundInterceptor {
+    private static final OperationDescriptor.Registry DESCRIPTORS = new OperationDescriptor.Registry("Couchbase/AsyncCluster/");
+
+    @Override
+    public void beforeMethod(EnhancedInstance objInst, Method method, Object[] allArguments, Class<?>[] argumentsTypes, MethodInterceptResult result) {
+        InvocationFrames frames = InvocationFrames.current();
+        boolean nested = frames.isNested();
+        frames.enter(false);
+        if (nested) {
+            return;
+        }
+        boolean sampled = CouchbaseInstanceState.isSampled(objInst, DESCRIPTORS.of(method));
+        QueryOptions.Built options = sampled || QueryAdvisor.isEnabled() ? CouchbaseSpanHelper.queryOptionsOf(allArguments) : null;
+        QueryAdvisor.record(statementOf(allArguments), options);
+        if (!sampled) {
+            return;
+        }
+        AbstractSpan span = ContextManager.createExitSpan(DESCRIPTORS.of(method).getOperationName(), CouchbaseInstanceState.peerOf(objInst));
+        frames.markTraced();
+        CouchbaseSpanHelper.tagStatement(span, statementOf(allArguments));
+        CouchbaseSpanHelper.tagQueryOptions(span, options);
+    }
+
+    @Override
+    public Object afterMethod(EnhancedInstance objInst, Method method, Object[] allArguments, Class<?>[] argumentsTypes, Object ret) {
+        InvocationFrames frames = InvocationFrames.current();
+        long startNanos = frames.getStartNanos();
+        OperationMetrics metrics = null;
+        boolean traced;
+        try {
+            if (frames.isOutermost()) {
+                metrics = CouchbaseInstanceState.metricsOf(objInst, DESCRIPTORS.of(method));
+                if (metrics != null && frames.isFailed()) {
+                    metrics.record(System.nanoTime() - startNanos, true);
+                    metrics = null;
+                }
+            }
+        } finally {
+            traced = frames.exit();
+        }
+        if (!traced) {
+            if (!frames.isNested() && ret instanceof CompletableFuture) {
+                // Not sampled, failures are traced anyway
+                ContextSnapshot snapshot = ContextManager.isActive() ? ContextManager.capture() : null;
+                ((CompletableFuture<?>) ret).whenComplete(UnsampledErrorRecorder.forQuery(
+                    DESCRIPTORS.of(method), CouchbaseInstanceState.peerOf(objInst), statementOf(allArguments), snapshot, metrics, startNanos));
+            }
+            return ret;
+        }
+        if (ret instanceof CompletableFuture) {
+            AbstractSpan span = ContextManager.activeSpan();
+            span.prepareForAsync();
+            ContextManager.stopSpan();
+            ((CompletableFuture<?>) ret).whenComplete(new CouchbaseAsyncSpanFinisher(span, metrics, startNanos));
+            return ret;
+        }
+        ContextManager.stopSpan();
+        return ret;
+    }
+
+    @Override
+    public void handleMethodException(EnhancedInstance objInst, Method method, Object[] allArguments, Class<?>[] argumentsTypes, Throwable t) {
+        InvocationFrames frames = InvocationFrames.current();
+        if (frames.isTraced()) {
+            frames.markFailed();
+            CouchbaseSpanHelper.logError(ContextManager.activeSpan(), t);
+        } else if (frames.isOutermost()) {
+            frames.markFailed();
+            UnsampledErrorRecorder.recordQuery(DESCRIPTORS.of(method), CouchbaseInstanceState.peerOf(objInst), statementOf(allArguments), null, t);
+        }
+    }
+
+    private static String statementOf(Object[] allArguments) {
+        return allArguments[0] != null ? allArguments[0].toString() : "";
+    }
+}
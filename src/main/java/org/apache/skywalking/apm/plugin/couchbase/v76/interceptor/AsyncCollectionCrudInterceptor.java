@@ -19,30 +19,115 @@
 package org.apache.skywalking.apm.plugin.couchbase.v76.interceptor;
 
 import org.apache.skywalking.apm.agent.core.context.ContextManager;
+import org.apache.skywalking.apm.agent.core.context.ContextSnapshot;
 import org.apache.skywalking.apm.agent.core.context.trace.AbstractSpan;
 import org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance.EnhancedInstance;
 import org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance.InstanceMethodsAroundInterceptor;
 import org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance.MethodInterceptResult;
+import org.apache.skywalking.apm.plugin.couchbase.v76.support.AggregatedOperation;
+import org.apache.skywalking.apm.plugin.couchbase.v76.support.CouchbaseAsyncSpanFinisher;
+import org.apache.skywalking.apm.plugin.couchbase.v76.support.CouchbaseInstanceState;
+import org.apache.skywalking.apm.plugin.couchbase.v76.support.CouchbaseSpanHelper;
+import org.apache.skywalking.apm.plugin.couchbase.v76.support.DocumentIdFormatter;
+import org.apache.skywalking.apm.plugin.couchbase.v76.support.HotKeys;
+import org.apache.skywalking.apm.plugin.couchbase.v76.support.InvocationFrames;
+import org.apache.skywalking.apm.plugin.couchbase.v76.support.OperationDescriptor;
+import org.apache.skywalking.apm.plugin.couchbase.v76.support.OperationMetrics;
+import org.apache.skywalking.apm.plugin.couchbase.v76.support.UnsampledErrorRecorder;
+
 import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
 
 public class AsyncCollectionCrudInterceptor implements InstanceMethodsAroundInterceptor {
+    private static final OperationDescriptor.Registry DESCRIPTORS = new OperationDescriptor.Registry("Couchbase/AsyncCollection/");
+
     @Override
     public void beforeMethod(EnhancedInstance objInst, Method method, Object[] allArguments, Class<?>[] argumentsTypes, MethodInterceptResult result) {
-        String operation = method.getName();
-        String docId = allArguments.length > 0 && allArguments[0] != null ? allArguments[0].toString() : "";
-        AbstractSpan span = ContextManager.createExitSpan("Couchbase/AsyncCollection/" + operation, null);
-        span.tag("db.operation", operation);
-        span.tag("db.document.id", docId);
+        InvocationFrames frames = InvocationFrames.current();
+        boolean nested = frames.isNested();
+        frames.enter(false);
+        if (nested) {
+            // Overload delegation, or called by Collection or ReactiveCollection which already trace this operation
+            return;
+        }
+        HotKeys.record(objInst, allArguments);
+        OperationDescriptor descriptor = DESCRIPTORS.of(method);
+        AggregatedOperation.Call aggregatedCall = AggregatedOperation.join(objInst, descriptor);
+        if (aggregatedCall != null) {
+            frames.attach(aggregatedCall);
+            return;
+        }
+        if (!CouchbaseInstanceState.isSampled(objInst, descriptor)) {
+            return;
+        }
+        AbstractSpan span = ContextManager.createExitSpan(descriptor.getOperationName(), CouchbaseInstanceState.peerOf(objInst));
+        frames.markTraced();
+        descriptor.tagStatic(span);
+        CouchbaseSpanHelper.tagDocumentId(span, allArguments.length > 0 ? allArguments[0] : null);
     }
 
     @Override
     public Object afterMethod(EnhancedInstance objInst, Method method, Object[] allArguments, Class<?>[] argumentsTypes, Object ret) {
+        InvocationFrames frames = InvocationFrames.current();
+        Object aggregatedCall = frames.getAttachment();
+        long startNanos = frames.getStartNanos();
+        boolean failed = frames.isFailed();
+        OperationMetrics metrics = null;
+        boolean traced;
+        try {
+            if (frames.isOutermost() && !(aggregatedCall instanceof AggregatedOperation.Call)) {
+                // Joined calls record their metrics on completion
+                metrics = CouchbaseInstanceState.metricsOf(objInst, DESCRIPTORS.of(method));
+                if (metrics != null && failed) {
+                    metrics.record(System.nanoTime() - startNanos, true);
+                    metrics = null;
+                }
+            }
+        } finally {
+            traced = frames.exit();
+        }
+        if (!traced) {
+            if (aggregatedCall instanceof AggregatedOperation.Call) {
+                AggregatedOperation.Call call = (AggregatedOperation.Call) aggregatedCall;
+                if (ret instanceof CompletableFuture) {
+                    ((CompletableFuture<?>) ret).whenComplete(call);
+                } else {
+                    call.accept(ret, null);
+                }
+            } else if (!frames.isNested() && ret instanceof CompletableFuture) {
+                // Not sampled, failures are traced anyway
+                ContextSnapshot snapshot = ContextManager.isActive() ? ContextManager.capture() : null;
+                String docId = DocumentIdFormatter.format(allArguments.length > 0 ? allArguments[0] : null);
+                ((CompletableFuture<?>) ret).whenComplete(new UnsampledErrorRecorder(
+                    DESCRIPTORS.of(method), CouchbaseInstanceState.peerOf(objInst), docId, snapshot, metrics, startNanos));
+            }
+            return ret;
+        }
+        if (ret instanceof CompletableFuture) {
+            // The operation is still in flight, keep the span open until the returned future completes.
+            AbstractSpan span = ContextManager.activeSpan();
+            span.prepareForAsync();
+            ContextManager.stopSpan();
+            ((CompletableFuture<?>) ret).whenComplete(new CouchbaseAsyncSpanFinisher(span, metrics, startNanos));
+            return ret;
+        }
         ContextManager.stopSpan();
         return ret;
     }
 
     @Override
     public void handleMethodException(EnhancedInstance objInst, Method method, Object[] allArguments, Class<?>[] argumentsTypes, Throwable t) {
-        ContextManager.activeSpan().log(t);
+        InvocationFrames frames = InvocationFrames.current();
+        if (frames.isTraced()) {
+            frames.markFailed();
+            CouchbaseSpanHelper.logError(ContextManager.activeSpan(), t);
+        } else if (frames.getAttachment() != null) {
+            ((AggregatedOperation.Call) frames.getAttachment()).accept(null, t);
+            frames.attach(null);
+        } else if (frames.isOutermost()) {
+            frames.markFailed();
+            String docId = DocumentIdFormatter.format(allArguments.length > 0 ? allArguments[0] : null);
+            UnsampledErrorRecorder.record(DESCRIPTORS.of(method), CouchbaseInstanceState.peerOf(objInst), docId, null, t);
+        }
     }
 }
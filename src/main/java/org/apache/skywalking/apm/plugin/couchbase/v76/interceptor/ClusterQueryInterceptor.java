@@ -18,36 +18,90 @@
 
 package org.apache.skywalking.apm.plugin.couchbase.v76.interceptor;
 
+import com.couchbase.client.java.query.QueryOptions;
+import com.couchbase.client.java.query.QueryResult;
 import org.apache.skywalking.apm.agent.core.context.ContextManager;
 import org.apache.skywalking.apm.agent.core.context.trace.AbstractSpan;
 import org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance.EnhancedInstance;
 import org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance.InstanceMethodsAroundInterceptor;
 import org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance.MethodInterceptResult;
+import org.apache.skywalking.apm.plugin.couchbase.v76.support.CouchbaseInstanceState;
 import org.apache.skywalking.apm.plugin.couchbase.v76.support.CouchbaseSpanHelper;
-import com.couchbase.client.java.Cluster;
+import org.apache.skywalking.apm.plugin.couchbase.v76.support.InvocationFrames;
+import org.apache.skywalking.apm.plugin.couchbase.v76.support.OperationDescriptor;
+import org.apache.skywalking.apm.plugin.couchbase.v76.support.OperationMetrics;
+import org.apache.skywalking.apm.plugin.couchbase.v76.support.QueryAdvisor;
 
 import java.lang.reflect.Method;
 
 public class ClusterQueryInterceptor implements InstanceMethodsAroundInterceptor {
+    private static final OperationDescriptor.Registry DESCRIPTORS = new OperationDescriptor.Registry("Couchbase/Cluster/");
+
     @Override
     public void beforeMethod(EnhancedInstance objInst, Method method, Object[] allArguments, Class<?>[] argumentsTypes, MethodInterceptResult result) {
-        String query = allArguments[0] != null ? allArguments[0].toString() : "";
-        AbstractSpan span = ContextManager.createExitSpan("Couchbase/Cluster/query", null);
-        span.tag("db.statement", query);
-        // Tag peer info if possible
-        if (objInst instanceof Cluster) {
-            CouchbaseSpanHelper.tagClusterInfo(span, (Cluster) objInst);
+        InvocationFrames frames = InvocationFrames.current();
+        boolean nested = frames.isNested();
+        frames.enter(false);
+        if (nested) {
+            return;
+        }
+        boolean sampled = CouchbaseInstanceState.isSampled(objInst, DESCRIPTORS.of(method));
+        QueryOptions.Built options = sampled || QueryAdvisor.isEnabled() ? CouchbaseSpanHelper.queryOptionsOf(allArguments) : null;
+        QueryAdvisor.record(statementOf(allArguments), options);
+        if (sampled) {
+            AbstractSpan span = ContextManager.createExitSpan(DESCRIPTORS.of(method).getOperationName(), CouchbaseInstanceState.peerOf(objInst));
+            frames.markTraced();
+            tagSpan(span, allArguments, options);
         }
     }
 
     @Override
     public Object afterMethod(EnhancedInstance objInst, Method method, Object[] allArguments, Class<?>[] argumentsTypes, Object ret) {
-        ContextManager.stopSpan();
+        InvocationFrames frames = InvocationFrames.current();
+        try {
+            if (frames.isOutermost()) {
+                OperationMetrics metrics = CouchbaseInstanceState.metricsOf(objInst, DESCRIPTORS.of(method));
+                if (metrics != null) {
+                    metrics.record(System.nanoTime() - frames.getStartNanos(), frames.isFailed());
+                }
+            }
+            if (frames.isTraced() && frames.isOutermost() && ret instanceof QueryResult) {
+                CouchbaseSpanHelper.tagQueryMetaData(ContextManager.activeSpan(), ((QueryResult) ret).metaData());
+            }
+        } finally {
+            if (frames.exit()) {
+                ContextManager.stopSpan();
+            }
+        }
         return ret;
     }
 
     @Override
     public void handleMethodException(EnhancedInstance objInst, Method method, Object[] allArguments, Class<?>[] argumentsTypes, Throwable t) {
-        ContextManager.activeSpan().log(t);
+        InvocationFrames frames = InvocationFrames.current();
+        frames.markFailed();
+        if (frames.isTraced()) {
+            CouchbaseSpanHelper.logError(ContextManager.activeSpan(), t);
+        } else if (frames.isOutermost()) {
+            // Not sampled, failures are traced anyway
+            CouchbaseSpanHelper.logError(createSpan(objInst, DESCRIPTORS.of(method), allArguments, CouchbaseSpanHelper.queryOptionsOf(allArguments)), t);
+            ContextManager.stopSpan();
+        }
+    }
+
+    private static AbstractSpan createSpan(EnhancedInstance objInst, OperationDescriptor descriptor, Object[] allArguments,
+        QueryOptions.Built options) {
+        AbstractSpan span = ContextManager.createExitSpan(descriptor.getOperationName(), CouchbaseInstanceState.peerOf(objInst));
+        tagSpan(span, allArguments, options);
+        return span;
+    }
+
+    private static void tagSpan(AbstractSpan span, Object[] allArguments, QueryOptions.Built options) {
+        CouchbaseSpanHelper.tagStatement(span, statementOf(allArguments));
+        CouchbaseSpanHelper.tagQueryOptions(span, options);
+    }
+
+    private static String statementOf(Object[] allArguments) {
+        return allArguments[0] != null ? allArguments[0].toString() : "";
     }
 }
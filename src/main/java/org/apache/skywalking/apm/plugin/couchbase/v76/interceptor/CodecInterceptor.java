@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.skywalking.apm.plugin.couchbase.v76.interceptor;
+
+import com.couchbase.client.java.codec.TypeRef;
+import org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance.EnhancedInstance;
+import org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance.InstanceMethodsAroundInterceptor;
+import org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance.MethodInterceptResult;
+import org.apache.skywalking.apm.plugin.couchbase.v76.CouchbasePluginConfig;
+import org.apache.skywalking.apm.plugin.couchbase.v76.support.CodecTimer;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+
+/**
+ * Times {@code Transcoder} and {@code JsonSerializer} calls. Encoding takes the value as only argument and is grouped
+ * by its class; decoding takes the target {@code Class} or {@code TypeRef} first and is grouped by the target class.
+ */
+public class CodecInterceptor implements InstanceMethodsAroundInterceptor {
+    @Override
+    public void beforeMethod(EnhancedInstance objInst, Method method, Object[] allArguments, Class<?>[] argumentsTypes, MethodInterceptResult result) {
+        if (CouchbasePluginConfig.Plugin.Couchbase.CODEC_METRICS) {
+            CodecTimer.current().start();
+        }
+    }
+
+    @Override
+    public Object afterMethod(EnhancedInstance objInst, Method method, Object[] allArguments, Class<?>[] argumentsTypes, Object ret) {
+        if (CouchbasePluginConfig.Plugin.Couchbase.CODEC_METRICS) {
+            boolean encode = allArguments.length == 1;
+            CodecTimer.current().stop(encode ? classOf(allArguments[0]) : targetClass(allArguments[0]), encode);
+        }
+        return ret;
+    }
+
+    @Override
+    public void handleMethodException(EnhancedInstance objInst, Method method, Object[] allArguments, Class<?>[] argumentsTypes, Throwable t) {
+        // do nothing
+    }
+
+    private static Class<?> classOf(Object value) {
+        return value != null ? value.getClass() : null;
+    }
+
+    private static Class<?> targetClass(Object target) {
+        if (target instanceof Class) {
+            return (Class<?>) target;
+        }
+        if (target instanceof TypeRef) {
+            Type type = ((TypeRef<?>) target).type();
+            if (type instanceof ParameterizedType) {
+                type = ((ParameterizedType) type).getRawType();
+            }
+            if (type instanceof Class) {
+                return (Class<?>) type;
+            }
+        }
+        return null;
+    }
+}
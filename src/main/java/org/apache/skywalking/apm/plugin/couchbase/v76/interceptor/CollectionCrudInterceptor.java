@@ -23,42 +23,107 @@ import org.apache.skywalking.apm.agent.core.context.trace.AbstractSpan;
 import org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance.EnhancedInstance;
 import org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance.InstanceMethodsAroundInterceptor;
 import org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance.MethodInterceptResult;
+import org.apache.skywalking.apm.plugin.couchbase.v76.support.CouchbaseInstanceState;
 import org.apache.skywalking.apm.plugin.couchbase.v76.support.CouchbaseSpanHelper;
+import org.apache.skywalking.apm.plugin.couchbase.v76.support.CouchbaseTags;
+import org.apache.skywalking.apm.plugin.couchbase.v76.support.HotKeys;
+import org.apache.skywalking.apm.plugin.couchbase.v76.support.InvocationFrames;
+import org.apache.skywalking.apm.plugin.couchbase.v76.support.OperationDescriptor;
+import org.apache.skywalking.apm.plugin.couchbase.v76.support.OperationMetrics;
 import com.couchbase.client.java.Collection;
 
 import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
 
 public class CollectionCrudInterceptor implements InstanceMethodsAroundInterceptor {
+    private static final OperationDescriptor.Registry DESCRIPTORS = new OperationDescriptor.Registry("Couchbase/Collection/");
 
     @Override
     public void beforeMethod(EnhancedInstance objInst, Method method, Object[] allArguments, Class<?>[] argumentsTypes, MethodInterceptResult result) {
-        String operation = method.getName();
-        String docId = allArguments.length > 0 && allArguments[0] != null ? org.apache.skywalking.apm.plugin.couchbase.v76.support.CouchbaseSpanHelper.truncateStatement(allArguments[0].toString()) : "";
-        AbstractSpan span = ContextManager.createExitSpan("Couchbase/Collection/" + operation, null);
-        span.tag("db.operation", operation);
-        span.tag("db.document.id", docId);
-        // Tag collection name if possible
-        if (objInst instanceof Collection) {
-            CouchbaseSpanHelper.tagCollectionInfo(span, (Collection) objInst);
+        InvocationFrames frames = InvocationFrames.current();
+        boolean nested = frames.isNested();
+        frames.enter(false);
+        if (nested) {
+            return;
         }
+        HotKeys.record(objInst, allArguments);
+        OperationDescriptor descriptor = DESCRIPTORS.of(method);
+        if (descriptor.isDeferred()) {
+            // Only the start time is recorded, the span is created in afterMethod if the call turns out slow
+            return;
+        }
+        if (!CouchbaseInstanceState.isSampled(objInst, descriptor)) {
+            return;
+        }
+        AbstractSpan span = ContextManager.createExitSpan(descriptor.getOperationName(), CouchbaseInstanceState.peerOf(objInst));
+        frames.markTraced();
+        tagSpan(span, objInst, descriptor, allArguments);
     }
 
     @Override
     public Object afterMethod(EnhancedInstance objInst, Method method, Object[] allArguments, Class<?>[] argumentsTypes, Object ret) {
-        ContextManager.stopSpan();
+        InvocationFrames frames = InvocationFrames.current();
+        try {
+            if (frames.isOutermost()) {
+                long elapsedNanos = System.nanoTime() - frames.getStartNanos();
+                OperationDescriptor descriptor = DESCRIPTORS.of(method);
+                OperationMetrics metrics = CouchbaseInstanceState.metricsOf(objInst, descriptor);
+                if (metrics != null) {
+                    metrics.record(elapsedNanos, frames.isFailed());
+                }
+                if (descriptor.isDeferred() && !frames.isFailed() && elapsedNanos >= descriptor.getDeferredThresholdNanos()
+                    && CouchbaseInstanceState.isSampled(objInst, descriptor)) {
+                    startedAgo(createSpan(objInst, descriptor, allArguments), elapsedNanos);
+                    ContextManager.stopSpan();
+                }
+            }
+        } finally {
+            if (frames.exit()) {
+                ContextManager.stopSpan();
+            }
+        }
         return ret;
     }
 
     @Override
     public void handleMethodException(EnhancedInstance objInst, Method method, Object[] allArguments, Class<?>[] argumentsTypes, Throwable t) {
-        AbstractSpan span = ContextManager.activeSpan();
-        span.log(t);
-        span.tag("error", "true");
-        if (t != null) {
-            String msg = t.getMessage();
-            if (msg != null && msg.toLowerCase().contains("timeout")) {
-                span.tag("db.timeout", "true");
-            }
+        InvocationFrames frames = InvocationFrames.current();
+        frames.markFailed();
+        if (frames.isTraced()) {
+            tagError(ContextManager.activeSpan(), t);
+        } else if (frames.isOutermost()) {
+            // Not sampled or deferred, failures are traced anyway
+            AbstractSpan span = createSpan(objInst, DESCRIPTORS.of(method), allArguments);
+            startedAgo(span, System.nanoTime() - frames.getStartNanos());
+            tagError(span, t);
+            ContextManager.stopSpan();
         }
     }
+
+    private static AbstractSpan createSpan(EnhancedInstance objInst, OperationDescriptor descriptor, Object[] allArguments) {
+        AbstractSpan span = ContextManager.createExitSpan(descriptor.getOperationName(), CouchbaseInstanceState.peerOf(objInst));
+        tagSpan(span, objInst, descriptor, allArguments);
+        return span;
+    }
+
+    private static void tagSpan(AbstractSpan span, EnhancedInstance objInst, OperationDescriptor descriptor, Object[] allArguments) {
+        descriptor.tagStatic(span);
+        CouchbaseSpanHelper.tagDocumentId(span, allArguments.length > 0 ? allArguments[0] : null);
+        // Tag collection name if possible
+        if (objInst instanceof Collection) {
+            CouchbaseSpanHelper.tagCollectionInfo(span, (Collection) objInst);
+        }
+    }
+
+    /**
+     * Back-date a span created once its call completed to the start of the call.
+     */
+    private static void startedAgo(AbstractSpan span, long elapsedNanos) {
+        span.start(System.currentTimeMillis() - TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+    }
+
+    private static void tagError(AbstractSpan span, Throwable t) {
+        CouchbaseSpanHelper.logError(span, t);
+        span.tag(CouchbaseTags.ERROR, "true");
+    }
 }
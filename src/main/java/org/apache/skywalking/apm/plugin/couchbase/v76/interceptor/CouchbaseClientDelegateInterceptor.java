@@ -18,51 +18,41 @@
 
 package org.apache.skywalking.apm.plugin.couchbase.v76.interceptor;
 
+import com.couchbase.client.core.Core;
+import com.couchbase.client.core.CoreContext;
 import com.couchbase.client.core.env.CoreEnvironment;
 import org.apache.skywalking.apm.agent.core.logging.api.ILog;
 import org.apache.skywalking.apm.agent.core.logging.api.LogManager;
 import org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance.EnhancedInstance;
 import org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance.InstanceConstructorInterceptor;
-import org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance.InstanceMethodsAroundInterceptor;
-import org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance.MethodInterceptResult;
+import org.apache.skywalking.apm.plugin.couchbase.v76.CouchbasePluginConfig;
+import org.apache.skywalking.apm.plugin.couchbase.v76.support.CouchbasePeerInfo;
 import org.apache.skywalking.apm.plugin.couchbase.v76.support.CouchbaseRemotePeerHelper;
+import org.apache.skywalking.apm.plugin.couchbase.v76.support.EndpointPoolSampler;
 
-import java.lang.reflect.Method;
-
-public class CouchbaseClientDelegateInterceptor implements InstanceConstructorInterceptor, InstanceMethodsAroundInterceptor {
+/**
+ * Resolves the remote peer of a {@code Core} when its {@code CoreContext} is constructed. Subclasses of
+ * {@code CoreContext}, such as the {@code RequestContext} created for every request, run the same constructor and are
+ * skipped, so that the request path does no extra work.
+ */
+public class CouchbaseClientDelegateInterceptor implements InstanceConstructorInterceptor {
 
     private static final ILog LOGGER = LogManager.getLogger(CouchbaseClientDelegateInterceptor.class);
 
     @Override
     public void onConstruct(EnhancedInstance objInst, Object[] allArguments) {
-        CoreEnvironment env = (CoreEnvironment) allArguments[0];
-        String remotePeer = CouchbaseRemotePeerHelper.getRemotePeer(env);
-        objInst.setSkyWalkingDynamicField(remotePeer);
-    }
-
-    @Override
-    public void beforeMethod(EnhancedInstance objInst, Method method, Object[] allArguments, Class<?>[] argumentsTypes,
-        MethodInterceptResult result) {
-        // do nothing
-    }
-
-    @Override
-    public Object afterMethod(EnhancedInstance objInst, Method method, Object[] allArguments, Class<?>[] argumentsTypes,
-        Object ret) {
-        if (ret instanceof EnhancedInstance) {
-            EnhancedInstance retInstance = (EnhancedInstance) ret;
-            String remotePeer = (String) objInst.getSkyWalkingDynamicField();
-            if (LOGGER.isDebugEnable()) {
-                LOGGER.debug("Mark OperationExecutor remotePeer: {}", remotePeer);
-            }
-            retInstance.setSkyWalkingDynamicField(remotePeer);
+        if (!CoreContext.class.equals(objInst.getClass())) {
+            return;
+        }
+        Core core = (Core) allArguments[0];
+        CoreEnvironment env = (CoreEnvironment) allArguments[2];
+        CouchbasePeerInfo peerInfo = CouchbaseRemotePeerHelper.resolve(core, env);
+        if (LOGGER.isDebugEnable()) {
+            LOGGER.debug("Mark CoreContext remotePeer: {}", peerInfo != null ? peerInfo.getPeer() : null);
+        }
+        objInst.setSkyWalkingDynamicField(peerInfo);
+        if (CouchbasePluginConfig.Plugin.Couchbase.POOL_METRICS) {
+            EndpointPoolSampler.register((long) allArguments[1]);
         }
-        return ret;
-    }
-
-    @Override
-    public void handleMethodException(EnhancedInstance objInst, Method method, Object[] allArguments,
-        Class<?>[] argumentsTypes, Throwable t) {
-        // do nothing
     }
 }
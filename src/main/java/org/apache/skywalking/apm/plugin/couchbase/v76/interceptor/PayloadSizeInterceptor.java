@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.skywalking.apm.plugin.couchbase.v76.interceptor;
+
+import com.couchbase.client.core.deps.io.netty.buffer.ByteBuf;
+import com.couchbase.client.core.msg.Request;
+import com.couchbase.client.core.msg.kv.KeyValueRequest;
+import org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance.EnhancedInstance;
+import org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance.InstanceMethodsAroundInterceptor;
+import org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance.MethodInterceptResult;
+import org.apache.skywalking.apm.plugin.couchbase.v76.support.PayloadSizeMeters;
+import org.apache.skywalking.apm.plugin.couchbase.v76.support.RequestTrace;
+
+import java.lang.reflect.Method;
+
+/**
+ * Measures the body of the packets of a key-value request, extras, key and value, as encoded by the request itself:
+ * the request packet is the buffer returned by {@code encode}, the response packet the buffer passed to
+ * {@code decode}. Both run on the IO thread before the request completes, so the span linked by
+ * {@link CoreSendInterceptor} is still open. A retried request is encoded again for every attempt, only the encoding of
+ * the first attempt is measured so that the request is counted once.
+ */
+public class PayloadSizeInterceptor implements InstanceMethodsAroundInterceptor {
+    private static final int HEADER_SIZE = 24;
+
+    @Override
+    public void beforeMethod(EnhancedInstance objInst, Method method, Object[] allArguments, Class<?>[] argumentsTypes, MethodInterceptResult result) {
+        if (allArguments.length == 2 && allArguments[0] instanceof ByteBuf) {
+            record(objInst, (ByteBuf) allArguments[0], false);
+        }
+    }
+
+    @Override
+    public Object afterMethod(EnhancedInstance objInst, Method method, Object[] allArguments, Class<?>[] argumentsTypes, Object ret) {
+        if (allArguments.length == 3 && ret instanceof ByteBuf && isFirstAttempt(objInst)) {
+            record(objInst, (ByteBuf) ret, true);
+        }
+        return ret;
+    }
+
+    @Override
+    public void handleMethodException(EnhancedInstance objInst, Method method, Object[] allArguments, Class<?>[] argumentsTypes, Throwable t) {
+        // do nothing
+    }
+
+    private static boolean isFirstAttempt(EnhancedInstance request) {
+        return request instanceof Request && ((Request<?>) request).context().retryAttempts() == 0;
+    }
+
+    private static void record(EnhancedInstance request, ByteBuf packet, boolean isRequest) {
+        if (!(request instanceof KeyValueRequest)) {
+            return;
+        }
+        int bodySize = Math.max(0, packet.readableBytes() - HEADER_SIZE);
+        RequestTrace trace = RequestTrace.of(request);
+        PayloadSizeMeters.record(((KeyValueRequest<?>) request).collectionIdentifier(), bodySize, isRequest,
+            trace != null ? trace.getSpan() : null);
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.skywalking.apm.plugin.couchbase.v76.interceptor;
+
+import com.couchbase.client.java.ReactiveScope;
+import org.apache.skywalking.apm.agent.core.context.ContextManager;
+import org.apache.skywalking.apm.agent.core.context.ContextSnapshot;
+import org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance.EnhancedInstance;
+import org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance.InstanceMethodsAroundInterceptor;
+import org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance.MethodInterceptResult;
+import org.apache.skywalking.apm.plugin.couchbase.v76.support.CouchbaseSpanHelper;
+import org.apache.skywalking.apm.plugin.couchbase.v76.support.InvocationFrames;
+import org.apache.skywalking.apm.plugin.couchbase.v76.support.OperationDescriptor;
+import org.apache.skywalking.apm.plugin.couchbase.v76.support.TracedQueryMono;
+import reactor.core.publisher.Mono;
+
+import java.lang.reflect.Method;
+
+/**
+ * The analytics and search calls of a {@code ReactiveCluster} or {@code ReactiveScope} only assemble a {@link Mono},
+ * wrapped like the one of {@code ReactiveCluster#query}, so that the span covers the subscription and the streaming of
+ * the rows, see {@link org.apache.skywalking.apm.plugin.couchbase.v76.support.QuerySubscriber}.
+ */
+public class ReactiveAnalyticsSearchInterceptor implements InstanceMethodsAroundInterceptor {
+    private static final OperationDescriptor.Registry CLUSTER_DESCRIPTORS = new OperationDescriptor.Registry("Couchbase/ReactiveCluster/");
+    private static final OperationDescriptor.Registry SCOPE_DESCRIPTORS = new OperationDescriptor.Registry("Couchbase/ReactiveScope/");
+
+    @Override
+    public void beforeMethod(EnhancedInstance objInst, Method method, Object[] allArguments, Class<?>[] argumentsTypes, MethodInterceptResult result) {
+        InvocationFrames frames = InvocationFrames.current();
+        // Only the outermost overload wraps the returned publisher
+        frames.enter(!frames.isNested());
+    }
+
+    @Override
+    public Object afterMethod(EnhancedInstance objInst, Method method, Object[] allArguments, Class<?>[] argumentsTypes, Object ret) {
+        if (!InvocationFrames.current().exit() || !(ret instanceof Mono)) {
+            return ret;
+        }
+        OperationDescriptor descriptor = objInst instanceof ReactiveScope ? SCOPE_DESCRIPTORS.of(method) : CLUSTER_DESCRIPTORS.of(method);
+        String statement = CouchbaseSpanHelper.serviceStatementOf(descriptor, allArguments, true);
+        ContextSnapshot snapshot = ContextManager.isActive() ? ContextManager.capture() : null;
+        return new TracedQueryMono<>((Mono<?>) ret, objInst, descriptor, statement, null, snapshot);
+    }
+
+    @Override
+    public void handleMethodException(EnhancedInstance objInst, Method method, Object[] allArguments, Class<?>[] argumentsTypes, Throwable t) {
+        // do nothing
+    }
+}
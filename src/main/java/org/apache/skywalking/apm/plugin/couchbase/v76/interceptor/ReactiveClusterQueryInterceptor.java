@@ -0,0 +1,66 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.skywalking.apm.plugin.couchbase.v76.interceptor;
+
+import com.couchbase.client.java.query.QueryOptions;
+import org.apache.skywalking.apm.agent.core.context.ContextManager;
+import org.apache.skywalking.apm.agent.core.context.ContextSnapshot;
+import org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance.EnhancedInstance;
+import org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance.InstanceMethodsAroundInterceptor;
+import org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance.MethodInterceptResult;
+import org.apache.skywalking.apm.plugin.couchbase.v76.support.CouchbaseSpanHelper;
+import org.apache.skywalking.apm.plugin.couchbase.v76.support.InvocationFrames;
+import org.apache.skywalking.apm.plugin.couchbase.v76.support.OperationDescriptor;
+import org.apache.skywalking.apm.plugin.couchbase.v76.support.QueryAdvisor;
+import org.apache.skywalking.apm.plugin.couchbase.v76.support.TracedQueryMono;
+import reactor.core.publisher.Mono;
+
+import java.lang.reflect.Method;
+
+/**
+ * {@code ReactiveCluster#query} only assembles a {@link Mono}, which is wrapped so that the span starts on subscribe,
+ * see {@link org.apache.skywalking.apm.plugin.couchbase.v76.support.QuerySubscriber}.
+ */
+public class ReactiveClusterQueryInterceptor implements InstanceMethodsAroundInterceptor {
+    private static final OperationDescriptor.Registry DESCRIPTORS = new OperationDescriptor.Registry("Couchbase/ReactiveCluster/");
+
+    @Override
+    public void beforeMethod(EnhancedInstance objInst, Method method, Object[] allArguments, Class<?>[] argumentsTypes, MethodInterceptResult result) {
+        InvocationFrames frames = InvocationFrames.current();
+        // Only the outermost overload wraps the returned publisher
+        frames.enter(!frames.isNested());
+    }
+
+    @Override
+    public Object afterMethod(EnhancedInstance objInst, Method method, Object[] allArguments, Class<?>[] argumentsTypes, Object ret) {
+        if (!InvocationFrames.current().exit() || !(ret instanceof Mono)) {
+            return ret;
+        }
+        String statement = allArguments[0] != null ? allArguments[0].toString() : "";
+        QueryOptions.Built options = CouchbaseSpanHelper.queryOptionsOf(allArguments);
+        QueryAdvisor.record(statement, options);
+        ContextSnapshot snapshot = ContextManager.isActive() ? ContextManager.capture() : null;
+        return new TracedQueryMono<>((Mono<?>) ret, objInst, DESCRIPTORS.of(method), statement, options, snapshot);
+    }
+
+    @Override
+    public void handleMethodException(EnhancedInstance objInst, Method method, Object[] allArguments, Class<?>[] argumentsTypes, Throwable t) {
+        // do nothing
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.skywalking.apm.plugin.couchbase.v76.interceptor;
+
+import org.apache.skywalking.apm.agent.core.context.ContextManager;
+import org.apache.skywalking.apm.agent.core.context.ContextSnapshot;
+import org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance.EnhancedInstance;
+import org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance.InstanceMethodsAroundInterceptor;
+import org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance.MethodInterceptResult;
+import org.apache.skywalking.apm.plugin.couchbase.v76.support.DocumentIdFormatter;
+import org.apache.skywalking.apm.plugin.couchbase.v76.support.HotKeys;
+import org.apache.skywalking.apm.plugin.couchbase.v76.support.InvocationFrames;
+import org.apache.skywalking.apm.plugin.couchbase.v76.support.OperationDescriptor;
+import org.apache.skywalking.apm.plugin.couchbase.v76.support.TracedFlux;
+import org.apache.skywalking.apm.plugin.couchbase.v76.support.TracedMono;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.lang.reflect.Method;
+
+/**
+ * {@code ReactiveCollection} methods only assemble a publisher, so no span is created around the method call. The
+ * returned {@link Mono}/{@link Flux} is wrapped instead, and the span is started on subscribe.
+ */
+public class ReactiveCollectionCrudInterceptor implements InstanceMethodsAroundInterceptor {
+    private static final OperationDescriptor.Registry DESCRIPTORS = new OperationDescriptor.Registry("Couchbase/ReactiveCollection/");
+
+    @Override
+    public void beforeMethod(EnhancedInstance objInst, Method method, Object[] allArguments, Class<?>[] argumentsTypes, MethodInterceptResult result) {
+        InvocationFrames frames = InvocationFrames.current();
+        boolean outermost = !frames.isNested();
+        // Only the outermost overload wraps the returned publisher
+        frames.enter(outermost);
+        if (outermost) {
+            HotKeys.record(objInst, allArguments);
+        }
+    }
+
+    @Override
+    public Object afterMethod(EnhancedInstance objInst, Method method, Object[] allArguments, Class<?>[] argumentsTypes, Object ret) {
+        if (!InvocationFrames.current().exit() || !(ret instanceof Mono) && !(ret instanceof Flux)) {
+            return ret;
+        }
+        OperationDescriptor descriptor = DESCRIPTORS.of(method);
+        String docId = DocumentIdFormatter.format(allArguments.length > 0 ? allArguments[0] : null);
+        ContextSnapshot snapshot = ContextManager.isActive() ? ContextManager.capture() : null;
+        if (ret instanceof Mono) {
+            return new TracedMono<>((Mono<?>) ret, objInst, descriptor, docId, snapshot);
+        }
+        return new TracedFlux<>((Flux<?>) ret, objInst, descriptor, docId, snapshot);
+    }
+
+    @Override
+    public void handleMethodException(EnhancedInstance objInst, Method method, Object[] allArguments, Class<?>[] argumentsTypes, Throwable t) {
+        // do nothing
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.skywalking.apm.plugin.couchbase.v76.interceptor;
+
+import com.couchbase.client.java.kv.PrefixScan;
+import com.couchbase.client.java.kv.RangeScan;
+import com.couchbase.client.java.kv.SamplingScan;
+import com.couchbase.client.java.kv.ScanOptions;
+import org.apache.skywalking.apm.agent.core.context.ContextManager;
+import org.apache.skywalking.apm.agent.core.context.ContextSnapshot;
+import org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance.EnhancedInstance;
+import org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance.InstanceMethodsAroundInterceptor;
+import org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance.MethodInterceptResult;
+import org.apache.skywalking.apm.plugin.couchbase.v76.support.InvocationFrames;
+import org.apache.skywalking.apm.plugin.couchbase.v76.support.OperationDescriptor;
+import org.apache.skywalking.apm.plugin.couchbase.v76.support.TracedScanFlux;
+import reactor.core.publisher.Flux;
+
+import java.lang.reflect.Method;
+
+/**
+ * Wraps the {@link Flux} returned by {@code ReactiveCollection#scan}, to which the blocking {@code Collection#scan}
+ * delegates, so that a single span covers the whole stream of the scan, see
+ * {@link org.apache.skywalking.apm.plugin.couchbase.v76.support.ScanSubscriber}.
+ */
+public class ReactiveCollectionScanInterceptor implements InstanceMethodsAroundInterceptor {
+    private static final OperationDescriptor.Registry DESCRIPTORS = new OperationDescriptor.Registry("Couchbase/ReactiveCollection/");
+
+    @Override
+    public void beforeMethod(EnhancedInstance objInst, Method method, Object[] allArguments, Class<?>[] argumentsTypes, MethodInterceptResult result) {
+        InvocationFrames frames = InvocationFrames.current();
+        // Only the outermost overload wraps the returned publisher
+        frames.enter(!frames.isNested());
+    }
+
+    @Override
+    public Object afterMethod(EnhancedInstance objInst, Method method, Object[] allArguments, Class<?>[] argumentsTypes, Object ret) {
+        if (!InvocationFrames.current().exit() || !(ret instanceof Flux)) {
+            return ret;
+        }
+        ContextSnapshot snapshot = ContextManager.isActive() ? ContextManager.capture() : null;
+        return new TracedScanFlux<>((Flux<?>) ret, objInst, DESCRIPTORS.of(method), scanTypeOf(allArguments[0]),
+            allArguments.length > 1 && allArguments[1] instanceof ScanOptions && ((ScanOptions) allArguments[1]).build().idsOnly(),
+            snapshot);
+    }
+
+    @Override
+    public void handleMethodException(EnhancedInstance objInst, Method method, Object[] allArguments, Class<?>[] argumentsTypes, Throwable t) {
+        // do nothing
+    }
+
+    private static String scanTypeOf(Object scanType) {
+        if (scanType instanceof RangeScan) {
+            return "range";
+        }
+        if (scanType instanceof PrefixScan) {
+            return "prefix";
+        }
+        if (scanType instanceof SamplingScan) {
+            return "sampling";
+        }
+        return "unknown";
+    }
+}
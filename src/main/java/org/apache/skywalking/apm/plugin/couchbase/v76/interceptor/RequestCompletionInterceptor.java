@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.skywalking.apm.plugin.couchbase.v76.interceptor;
+
+import com.couchbase.client.core.msg.Request;
+import com.couchbase.client.core.msg.RequestContext;
+import com.couchbase.client.core.msg.kv.KeyValueRequest;
+import com.couchbase.client.core.retry.RetryReason;
+import com.couchbase.client.core.util.HostAndPort;
+import org.apache.skywalking.apm.agent.core.context.trace.AbstractSpan;
+import org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance.EnhancedInstance;
+import org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance.InstanceMethodsAroundInterceptor;
+import org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance.MethodInterceptResult;
+import org.apache.skywalking.apm.plugin.couchbase.v76.support.CouchbaseTags;
+import org.apache.skywalking.apm.plugin.couchbase.v76.support.NodeLatencyMeters;
+import org.apache.skywalking.apm.plugin.couchbase.v76.support.RequestTrace;
+
+import java.lang.reflect.Method;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs before a request completes its response future, hence before the span of the operation is finished. Tags the
+ * span with the node, vBucket and endpoint that answered and, if the request was retried, with the number of retries,
+ * their reasons and the total backoff. Records the latency of the node.
+ */
+public class RequestCompletionInterceptor implements InstanceMethodsAroundInterceptor {
+    @Override
+    public void beforeMethod(EnhancedInstance objInst, Method method, Object[] allArguments, Class<?>[] argumentsTypes, MethodInterceptResult result) {
+        if (!(objInst instanceof Request)) {
+            return;
+        }
+        Request<?> request = (Request<?>) objInst;
+        if (request.completed()) {
+            return;
+        }
+        RequestContext context = request.context();
+        HostAndPort node = context.lastDispatchedTo();
+        String nodeLabel = node != null ? NodeLatencyMeters.record(node, System.nanoTime() - request.createdAt()) : null;
+
+        RequestTrace trace = RequestTrace.of(objInst);
+        if (trace == null) {
+            return;
+        }
+        objInst.setSkyWalkingDynamicField(null);
+        AbstractSpan operationSpan = trace.getSpan();
+        if (nodeLabel != null) {
+            operationSpan.tag(CouchbaseTags.NODE, nodeLabel);
+        }
+        if (request instanceof KeyValueRequest) {
+            operationSpan.tag(CouchbaseTags.VBUCKET, NodeLatencyMeters.vbucketLabel(((KeyValueRequest<?>) request).partition()));
+        }
+        String endpoint = context.lastChannelId();
+        if (endpoint != null) {
+            operationSpan.tag(CouchbaseTags.ENDPOINT, endpoint);
+        }
+        int retries = context.retryAttempts();
+        if (retries > 0) {
+            operationSpan.tag(CouchbaseTags.RETRIES, Integer.toString(retries));
+            operationSpan.tag(CouchbaseTags.RETRY_REASONS, retryReasons(context.retryReasons()));
+            operationSpan.tag(CouchbaseTags.RETRY_BACKOFF_MS, Long.toString(TimeUnit.NANOSECONDS.toMillis(trace.getBackoffNanos())));
+        }
+    }
+
+    private static String retryReasons(Set<RetryReason> reasons) {
+        if (reasons == null || reasons.isEmpty()) {
+            return "";
+        }
+        StringBuilder joined = new StringBuilder();
+        for (RetryReason reason : reasons) {
+            if (joined.length() > 0) {
+                joined.append(',');
+            }
+            joined.append(reason.name());
+        }
+        return joined.toString();
+    }
+
+    @Override
+    public Object afterMethod(EnhancedInstance objInst, Method method, Object[] allArguments, Class<?>[] argumentsTypes, Object ret) {
+        return ret;
+    }
+
+    @Override
+    public void handleMethodException(EnhancedInstance objInst, Method method, Object[] allArguments, Class<?>[] argumentsTypes, Throwable t) {
+        // do nothing
+    }
+}
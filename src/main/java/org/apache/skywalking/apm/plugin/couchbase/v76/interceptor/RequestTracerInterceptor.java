@@ -0,0 +1,64 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.skywalking.apm.plugin.couchbase.v76.interceptor;
+
+import com.couchbase.client.core.cnc.CbTracing;
+import com.couchbase.client.core.cnc.RequestTracer;
+import org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance.EnhancedInstance;
+import org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance.InstanceMethodsAroundInterceptor;
+import org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance.MethodInterceptResult;
+import org.apache.skywalking.apm.plugin.couchbase.v76.CouchbasePluginConfig;
+import org.apache.skywalking.apm.plugin.couchbase.v76.support.SkyWalkingRequestTracer;
+
+import java.lang.reflect.Method;
+
+/**
+ * Installs a {@link SkyWalkingRequestTracer} around the tracer of a {@code CoreEnvironment}. {@code Core} resolves
+ * the tracer of its environment once, in its constructor, so the wrapper is created on the first call and kept in the
+ * dynamic field of the environment for the following ones.
+ * <p>
+ * The SDK skips the span attributes of every request when its tracer is one of its internal ones, see
+ * {@link CbTracing#isInternalTracer(RequestTracer)}. Wrapping an internal tracer loses that fast path for all traffic,
+ * so it is only done when {@code plugin.couchbase.trace_request_phases} is enabled.
+ */
+public class RequestTracerInterceptor implements InstanceMethodsAroundInterceptor {
+    @Override
+    public void beforeMethod(EnhancedInstance objInst, Method method, Object[] allArguments, Class<?>[] argumentsTypes, MethodInterceptResult result) {
+    }
+
+    @Override
+    public Object afterMethod(EnhancedInstance objInst, Method method, Object[] allArguments, Class<?>[] argumentsTypes, Object ret) {
+        if (!(ret instanceof RequestTracer)
+            || !CouchbasePluginConfig.Plugin.Couchbase.TRACE_REQUEST_PHASES && CbTracing.isInternalTracer((RequestTracer) ret)) {
+            return ret;
+        }
+        Object installed = objInst.getSkyWalkingDynamicField();
+        if (installed instanceof SkyWalkingRequestTracer && ((SkyWalkingRequestTracer) installed).getDelegate() == ret) {
+            return installed;
+        }
+        SkyWalkingRequestTracer tracer = new SkyWalkingRequestTracer((RequestTracer) ret);
+        objInst.setSkyWalkingDynamicField(tracer);
+        return tracer;
+    }
+
+    @Override
+    public void handleMethodException(EnhancedInstance objInst, Method method, Object[] allArguments, Class<?>[] argumentsTypes, Throwable t) {
+        // do nothing
+    }
+}
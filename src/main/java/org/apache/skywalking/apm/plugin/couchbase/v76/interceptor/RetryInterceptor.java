@@ -0,0 +1,57 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.skywalking.apm.plugin.couchbase.v76.interceptor;
+
+import com.couchbase.client.core.msg.RequestContext;
+import com.couchbase.client.core.retry.RetryReason;
+import org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance.EnhancedInstance;
+import org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance.InstanceMethodsAroundInterceptor;
+import org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance.MethodInterceptResult;
+import org.apache.skywalking.apm.plugin.couchbase.v76.support.RequestTrace;
+import org.apache.skywalking.apm.plugin.couchbase.v76.support.RetryMeters;
+
+import java.lang.reflect.Method;
+import java.time.Duration;
+
+/**
+ * Counts every retry scheduled by the retry orchestrator and, if the request was sent by a traced operation,
+ * accumulates its backoff in its {@link RequestTrace} for {@link RequestCompletionInterceptor} to tag.
+ */
+public class RetryInterceptor implements InstanceMethodsAroundInterceptor {
+    @Override
+    public void beforeMethod(EnhancedInstance objInst, Method method, Object[] allArguments, Class<?>[] argumentsTypes, MethodInterceptResult result) {
+        Duration backoff = (Duration) allArguments[0];
+        long backoffNanos = backoff != null ? backoff.toNanos() : 0;
+        RequestTrace trace = RequestTrace.of(((RequestContext) objInst).request());
+        if (trace != null) {
+            trace.addBackoff(backoffNanos);
+        }
+        RetryMeters.record((RetryReason) allArguments[1], backoffNanos);
+    }
+
+    @Override
+    public Object afterMethod(EnhancedInstance objInst, Method method, Object[] allArguments, Class<?>[] argumentsTypes, Object ret) {
+        return ret;
+    }
+
+    @Override
+    public void handleMethodException(EnhancedInstance objInst, Method method, Object[] allArguments, Class<?>[] argumentsTypes, Throwable t) {
+        // do nothing
+    }
+}
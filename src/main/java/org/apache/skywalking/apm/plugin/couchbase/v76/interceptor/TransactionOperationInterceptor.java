@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package org.apache.skywalking.apm.plugin.couchbase.v76.interceptor;
+
+import com.couchbase.client.java.Collection;
+import com.couchbase.client.java.transactions.TransactionGetResult;
+import org.apache.skywalking.apm.agent.core.context.ContextManager;
+import org.apache.skywalking.apm.agent.core.context.trace.AbstractSpan;
+import org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance.EnhancedInstance;
+import org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance.InstanceMethodsAroundInterceptor;
+import org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance.MethodInterceptResult;
+import org.apache.skywalking.apm.plugin.couchbase.v76.support.CouchbaseSpanHelper;
+import org.apache.skywalking.apm.plugin.couchbase.v76.support.InvocationFrames;
+import org.apache.skywalking.apm.plugin.couchbase.v76.support.OperationDescriptor;
+import org.apache.skywalking.apm.plugin.couchbase.v76.support.TransactionTrace;
+
+import java.lang.reflect.Method;
+
+/**
+ * Traces the key-value operations of a transaction attempt, {@code get}, {@code getReplicaFromPreferredServerGroup},
+ * {@code insert}, {@code replace} and {@code remove} on {@code TransactionAttemptContext}, with an exit span child of
+ * the span of the attempt. The operations of an attempt are traced if, and only if, its transaction is.
+ */
+public class TransactionOperationInterceptor implements InstanceMethodsAroundInterceptor {
+    private static final OperationDescriptor.Registry DESCRIPTORS = new OperationDescriptor.Registry("Couchbase/Transactions/");
+
+    @Override
+    public void beforeMethod(EnhancedInstance objInst, Method method, Object[] allArguments, Class<?>[] argumentsTypes, MethodInterceptResult result) {
+        InvocationFrames frames = InvocationFrames.current();
+        boolean nested = frames.isNested();
+        frames.enter(false);
+        if (nested) {
+            // Overload delegation
+            return;
+        }
+        TransactionTrace trace = TransactionTrace.of(objInst);
+        if (trace == null || !trace.isTraced() || !ContextManager.isActive()) {
+            return;
+        }
+        Object target = allArguments[0];
+        OperationDescriptor descriptor = DESCRIPTORS.of(method);
+        AbstractSpan span = ContextManager.createExitSpan(descriptor.getOperationName(), trace.peerOf(target));
+        frames.markTraced();
+        descriptor.tagStatic(span);
+        if (target instanceof Collection) {
+            CouchbaseSpanHelper.tagDocumentId(span, allArguments[1]);
+            CouchbaseSpanHelper.tagCollectionInfo(span, (Collection) target);
+        } else if (target instanceof TransactionGetResult) {
+            CouchbaseSpanHelper.tagDocumentId(span, ((TransactionGetResult) target).id());
+        }
+    }
+
+    @Override
+    public Object afterMethod(EnhancedInstance objInst, Method method, Object[] allArguments, Class<?>[] argumentsTypes, Object ret) {
+        if (InvocationFrames.current().exit()) {
+            ContextManager.stopSpan();
+        }
+        return ret;
+    }
+
+    @Override
+    public void handleMethodException(EnhancedInstance objInst, Method method, Object[] allArguments, Class<?>[] argumentsTypes, Throwable t) {
+        InvocationFrames frames = InvocationFrames.current();
+        frames.markFailed();
+        if (frames.isTraced()) {
+            CouchbaseSpanHelper.logError(ContextManager.activeSpan(), t);
+        }
+    }
+}
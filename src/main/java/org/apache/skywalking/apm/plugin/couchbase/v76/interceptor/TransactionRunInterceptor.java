@@ -0,0 +1,76 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.skywalking.apm.plugin.couchbase.v76.interceptor;
+
+import com.couchbase.client.java.transactions.TransactionAttemptContext;
+import org.apache.skywalking.apm.agent.core.context.ContextManager;
+import org.apache.skywalking.apm.agent.core.context.trace.AbstractSpan;
+import org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance.EnhancedInstance;
+import org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance.InstanceMethodsAroundInterceptor;
+import org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance.MethodInterceptResult;
+import org.apache.skywalking.apm.plugin.couchbase.v76.support.CouchbaseInstanceState;
+import org.apache.skywalking.apm.plugin.couchbase.v76.support.OperationDescriptor;
+import org.apache.skywalking.apm.plugin.couchbase.v76.support.TracedTransactionLogic;
+import org.apache.skywalking.apm.plugin.couchbase.v76.support.TransactionTrace;
+
+import java.lang.reflect.Method;
+import java.util.function.Consumer;
+
+/**
+ * Traces {@code Transactions#run(Consumer, TransactionOptions)} with a local span, parent of the spans of its attempts
+ * and, through them, of the key-value operations of the transaction traced by {@link TransactionOperationInterceptor}. The transaction logic argument is replaced by a
+ * {@link TracedTransactionLogic}, which carries the {@link TransactionTrace} of the call until it returns. Invocation
+ * frames are not used, so that the operations of an attempt run on the calling thread are traced as usual.
+ */
+public class TransactionRunInterceptor implements InstanceMethodsAroundInterceptor {
+    private static final OperationDescriptor.Registry DESCRIPTORS = new OperationDescriptor.Registry("Couchbase/Transactions/");
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void beforeMethod(EnhancedInstance objInst, Method method, Object[] allArguments, Class<?>[] argumentsTypes, MethodInterceptResult result) {
+        if (!(allArguments[0] instanceof Consumer) || allArguments[0] instanceof TracedTransactionLogic) {
+            return;
+        }
+        AbstractSpan span = null;
+        OperationDescriptor descriptor = DESCRIPTORS.of(method);
+        if (CouchbaseInstanceState.isSampled(objInst, descriptor)) {
+            span = ContextManager.createLocalSpan(descriptor.getOperationName());
+        }
+        allArguments[0] = new TracedTransactionLogic((Consumer<TransactionAttemptContext>) allArguments[0], new TransactionTrace(span));
+    }
+
+    @Override
+    public Object afterMethod(EnhancedInstance objInst, Method method, Object[] allArguments, Class<?>[] argumentsTypes, Object ret) {
+        if (allArguments[0] instanceof TracedTransactionLogic) {
+            TransactionTrace trace = ((TracedTransactionLogic) allArguments[0]).getTrace();
+            trace.finish();
+            if (trace.isTraced()) {
+                ContextManager.stopSpan();
+            }
+        }
+        return ret;
+    }
+
+    @Override
+    public void handleMethodException(EnhancedInstance objInst, Method method, Object[] allArguments, Class<?>[] argumentsTypes, Throwable t) {
+        if (allArguments[0] instanceof TracedTransactionLogic) {
+            ((TracedTransactionLogic) allArguments[0]).getTrace().failed(t);
+        }
+    }
+}
@@ -0,0 +1,241 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.skywalking.apm.plugin.couchbase.v76.support;
+
+import org.apache.skywalking.apm.agent.core.boot.DefaultNamedThreadFactory;
+import org.apache.skywalking.apm.agent.core.context.ContextManager;
+import org.apache.skywalking.apm.agent.core.context.trace.AbstractSpan;
+import org.apache.skywalking.apm.agent.core.logging.api.ILog;
+import org.apache.skywalking.apm.agent.core.logging.api.LogManager;
+import org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance.EnhancedInstance;
+import org.apache.skywalking.apm.plugin.couchbase.v76.CouchbasePluginConfig;
+import org.apache.skywalking.apm.util.RunnableWithExceptionProtection;
+
+import java.lang.ref.WeakReference;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+/**
+ * Collapses fan-out calls into one span. Once more than {@code plugin.couchbase.aggregation_threshold} calls of the
+ * same operation against the same collection are issued under the same parent span within
+ * {@code plugin.couchbase.aggregation_window_ms}, further calls do not get a span of their own; they join a single
+ * aggregated span, tagged with the count, total bytes, min/max/p50/p99 latency and error count of the joined calls.
+ * <p>
+ * A window has at most one aggregated span. It stays open until the window has expired and the last joined call in
+ * flight has completed, whichever comes last; a window whose calls all completed early is finished by a sweeper
+ * started with the first aggregated span. The per thread tracker only holds weak references, so that neither the
+ * parent span nor the aggregated span outlives its trace through it.
+ */
+public class AggregatedOperation {
+
+    private static final ILog LOGGER = LogManager.getLogger(AggregatedOperation.class);
+
+    private static final int CLOSED = -1;
+
+    private static final ThreadLocal<FanOutTracker> TRACKERS = ThreadLocal.withInitial(FanOutTracker::new);
+
+    private final AbstractSpan span;
+    private final long windowEndNanos;
+    /**
+     * Joined calls in flight, or {@link #CLOSED} once the span is finished.
+     */
+    private final AtomicInteger pending = new AtomicInteger();
+    private final LatencyDistribution distribution = new LatencyDistribution();
+
+    AggregatedOperation(AbstractSpan span, long windowEndNanos) {
+        this.span = span;
+        this.windowEndNanos = windowEndNanos;
+    }
+
+    /**
+     * Called before the operation is issued, while its parent span is active.
+     *
+     * @return the call joined to an aggregated span, or null if the operation must be traced on its own
+     */
+    public static Call join(EnhancedInstance collection, OperationDescriptor descriptor) {
+        int threshold = CouchbasePluginConfig.Plugin.Couchbase.AGGREGATION_THRESHOLD;
+        if (threshold <= 0 || !ContextManager.isActive()) {
+            return null;
+        }
+        FanOutTracker tracker = TRACKERS.get();
+        AbstractSpan parent = ContextManager.activeSpan();
+        long now = System.nanoTime();
+        if (tracker.parent.get() != parent || tracker.collection.get() != collection || tracker.descriptor != descriptor
+            || now - tracker.windowEndNanos >= 0) {
+            tracker.reset(parent, collection, descriptor, now);
+        }
+        if (++tracker.count <= threshold) {
+            return null;
+        }
+        AggregatedOperation aggregate = tracker.aggregate.get();
+        if (aggregate == null) {
+            aggregate = start(collection, descriptor, tracker.windowEndNanos);
+            tracker.aggregate = new WeakReference<>(aggregate);
+        }
+        if (!aggregate.tryJoin()) {
+            // Only closed once its window expired, which resets the tracker first
+            return null;
+        }
+        return new Call(aggregate, now, CouchbaseInstanceState.metricsOf(collection, descriptor));
+    }
+
+    private static AggregatedOperation start(EnhancedInstance collection, OperationDescriptor descriptor, long windowEndNanos) {
+        AbstractSpan span = ContextManager.createExitSpan(descriptor.getOperationName(), CouchbaseInstanceState.peerOf(collection));
+        descriptor.tagStatic(span);
+        span.tag(CouchbaseTags.DB_AGGREGATED, "true");
+        span.prepareForAsync();
+        ContextManager.stopSpan();
+        AggregatedOperation aggregate = new AggregatedOperation(span, windowEndNanos);
+        Sweeper.OPEN.add(aggregate);
+        return aggregate;
+    }
+
+    boolean tryJoin() {
+        int current;
+        do {
+            current = pending.get();
+            if (current == CLOSED) {
+                return false;
+            }
+        }
+        while (!pending.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    void complete(long nanos, long bytes, Throwable throwable) {
+        distribution.record(nanos, bytes, throwable != null);
+        if (throwable != null) {
+            CouchbaseSpanHelper.logError(span, throwable);
+        }
+        if (pending.decrementAndGet() == 0) {
+            expire(System.nanoTime());
+        }
+    }
+
+    /**
+     * Finishes the span if its window has expired and no joined call is in flight.
+     *
+     * @return whether the span is finished, by this or an earlier call
+     */
+    boolean expire(long now) {
+        if (now - windowEndNanos < 0) {
+            return false;
+        }
+        if (pending.compareAndSet(0, CLOSED)) {
+            Sweeper.OPEN.remove(this);
+            finish();
+        }
+        return pending.get() == CLOSED;
+    }
+
+    boolean isClosed() {
+        return pending.get() == CLOSED;
+    }
+
+    private void finish() {
+        span.tag(CouchbaseTags.DB_AGGREGATED_COUNT, Long.toString(distribution.getCount()));
+        span.tag(CouchbaseTags.DB_AGGREGATED_BYTES, Long.toString(distribution.getTotalBytes()));
+        span.tag(CouchbaseTags.DB_AGGREGATED_ERRORS, Long.toString(distribution.getErrors()));
+        span.tag(CouchbaseTags.DB_AGGREGATED_MIN_US, Long.toString(TimeUnit.NANOSECONDS.toMicros(distribution.getMinNanos())));
+        span.tag(CouchbaseTags.DB_AGGREGATED_MAX_US, Long.toString(TimeUnit.NANOSECONDS.toMicros(distribution.getMaxNanos())));
+        span.tag(CouchbaseTags.DB_AGGREGATED_P50_US, Long.toString(TimeUnit.NANOSECONDS.toMicros(distribution.percentileNanos(0.5))));
+        span.tag(CouchbaseTags.DB_AGGREGATED_P99_US, Long.toString(TimeUnit.NANOSECONDS.toMicros(distribution.percentileNanos(0.99))));
+        span.asyncFinish();
+    }
+
+    /**
+     * One call joined to an aggregated span, completed through {@code whenComplete} or directly when the call fails
+     * synchronously.
+     */
+    public static class Call implements BiConsumer<Object, Throwable> {
+        private final AggregatedOperation aggregate;
+        private final long startNanos;
+        private final OperationMetrics metrics;
+
+        Call(AggregatedOperation aggregate, long startNanos, OperationMetrics metrics) {
+            this.aggregate = aggregate;
+            this.startNanos = startNanos;
+            this.metrics = metrics;
+        }
+
+        @Override
+        public void accept(Object result, Throwable throwable) {
+            long nanos = System.nanoTime() - startNanos;
+            if (metrics != null) {
+                metrics.record(nanos, throwable != null);
+            }
+            aggregate.complete(
+                nanos, CouchbaseSpanHelper.resultSize(result),
+                throwable == null ? null : CouchbaseAsyncSpanFinisher.unwrap(throwable)
+            );
+        }
+    }
+
+    private static class FanOutTracker {
+        private WeakReference<AbstractSpan> parent = new WeakReference<>(null);
+        private WeakReference<EnhancedInstance> collection = new WeakReference<>(null);
+        private OperationDescriptor descriptor;
+        private long windowEndNanos;
+        private int count;
+        private WeakReference<AggregatedOperation> aggregate = new WeakReference<>(null);
+
+        private void reset(AbstractSpan parent, EnhancedInstance collection, OperationDescriptor descriptor, long now) {
+            AggregatedOperation previous = aggregate.get();
+            if (previous != null) {
+                // Left early, for another parent, collection or operation
+                previous.expire(Math.max(now, previous.windowEndNanos));
+            }
+            this.parent = new WeakReference<>(parent);
+            this.collection = new WeakReference<>(collection);
+            this.descriptor = descriptor;
+            this.windowEndNanos = now + TimeUnit.MILLISECONDS.toNanos(CouchbasePluginConfig.Plugin.Couchbase.AGGREGATION_WINDOW_MS);
+            this.count = 0;
+            this.aggregate = new WeakReference<>(null);
+        }
+    }
+
+    /**
+     * Finishes the aggregated spans whose window expired after their last joined call completed. Started by the first
+     * aggregated span, so that applications without aggregation get no thread.
+     */
+    private static final class Sweeper {
+        private static final Set<AggregatedOperation> OPEN = ConcurrentHashMap.newKeySet();
+
+        static {
+            long interval = Math.max(CouchbasePluginConfig.Plugin.Couchbase.AGGREGATION_WINDOW_MS, 100);
+            Executors.newSingleThreadScheduledExecutor(new DefaultNamedThreadFactory("CouchbaseAggregationSweeper"))
+                     .scheduleWithFixedDelay(
+                         new RunnableWithExceptionProtection(
+                             Sweeper::sweep, t -> LOGGER.error(t, "Failed to sweep couchbase aggregated spans.")),
+                         interval, interval, TimeUnit.MILLISECONDS
+                     );
+        }
+
+        private static void sweep() {
+            long now = System.nanoTime();
+            for (AggregatedOperation aggregate : OPEN) {
+                aggregate.expire(now);
+            }
+        }
+    }
+}
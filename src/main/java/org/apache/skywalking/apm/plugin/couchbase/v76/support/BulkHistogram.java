@@ -0,0 +1,61 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.skywalking.apm.plugin.couchbase.v76.support;
+
+import org.apache.skywalking.apm.agent.core.meter.Histogram;
+import org.apache.skywalking.apm.agent.core.meter.MeterId;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Histogram whose buckets are incremented in bulk with counts accumulated elsewhere, instead of one
+ * {@link #addValue(double)} per observation.
+ */
+public class BulkHistogram extends Histogram {
+
+    public BulkHistogram(MeterId meterId, List<Double> steps) {
+        super(meterId, steps);
+    }
+
+    /**
+     * @param index index of the bucket in the steps the histogram was built with
+     */
+    public void increment(int index, long count) {
+        buckets[index].increment(count);
+    }
+
+    public static class Builder extends Histogram.Builder {
+        private final List<Double> steps;
+
+        /**
+         * @param steps the bucket lower bounds, ascending and starting at 0
+         */
+        public Builder(String name, List<Double> steps) {
+            super(name);
+            this.steps = new ArrayList<>(steps);
+            steps(this.steps);
+        }
+
+        @Override
+        protected BulkHistogram create(MeterId meterId) {
+            return new BulkHistogram(meterId, steps);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.skywalking.apm.plugin.couchbase.v76.support;
+
+import org.apache.skywalking.apm.agent.core.meter.Counter;
+import org.apache.skywalking.apm.agent.core.meter.CounterMode;
+import org.apache.skywalking.apm.agent.core.meter.MeterFactory;
+import org.apache.skywalking.apm.plugin.couchbase.v76.CouchbasePluginConfig;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Codec meters of one document type, tagged with the {@code type} and the {@code direction}, {@code encode} or
+ * {@code decode}: {@code couchbase_codec_calls}, and {@code couchbase_codec_wall_time} and
+ * {@code couchbase_codec_cpu_time} in milliseconds. The meters of a type are resolved through a {@link ClassValue},
+ * and counters are striped adders, so recording does not contend. Only the first
+ * {@code plugin.couchbase.codec_metric_max_types} types get their own meters, the following ones share the meters
+ * tagged {@code other}.
+ */
+public class CodecMeters {
+
+    private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private static final AtomicInteger TYPE_COUNT = new AtomicInteger();
+
+    private static final ClassValue<CodecMeters> TYPES = new ClassValue<CodecMeters>() {
+        @Override
+        protected CodecMeters computeValue(Class<?> type) {
+            if (TYPE_COUNT.incrementAndGet() > CouchbasePluginConfig.Plugin.Couchbase.CODEC_METRIC_MAX_TYPES) {
+                return Other.METERS;
+            }
+            return new CodecMeters(type.getName());
+        }
+    };
+
+    private final Direction encode;
+    private final Direction decode;
+
+    private CodecMeters(String type) {
+        this.encode = new Direction(type, "encode");
+        this.decode = new Direction(type, "decode");
+    }
+
+    public static CodecMeters of(Class<?> type) {
+        return TYPES.get(type != null ? type : Object.class);
+    }
+
+    /**
+     * @param cpuNanos CPU time, negative if not measured
+     */
+    public void record(boolean isEncode, long wallNanos, long cpuNanos) {
+        Direction direction = isEncode ? encode : decode;
+        direction.calls.increment(1);
+        direction.wallTime.increment(wallNanos / NANOS_PER_MILLI);
+        if (cpuNanos >= 0) {
+            direction.cpuTime.increment(cpuNanos / NANOS_PER_MILLI);
+        }
+    }
+
+    private static class Other {
+        private static final CodecMeters METERS = new CodecMeters("other");
+    }
+
+    private static class Direction {
+        private final Counter calls;
+        private final Counter wallTime;
+        private final Counter cpuTime;
+
+        private Direction(String type, String direction) {
+            this.calls = MeterFactory.counter("couchbase_codec_calls")
+                                     .tag("type", type).tag("direction", direction)
+                                     .mode(CounterMode.INCREMENT)
+                                     .build();
+            this.wallTime = MeterFactory.counter("couchbase_codec_wall_time")
+                                        .tag("type", type).tag("direction", direction)
+                                        .mode(CounterMode.INCREMENT)
+                                        .build();
+            this.cpuTime = MeterFactory.counter("couchbase_codec_cpu_time")
+                                       .tag("type", type).tag("direction", direction)
+                                       .mode(CounterMode.INCREMENT)
+                                       .build();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.skywalking.apm.plugin.couchbase.v76.support;
+
+import org.apache.skywalking.apm.agent.core.context.trace.AbstractSpan;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-thread timer of the encoding and decoding of documents. A transcoder usually delegates to a serializer, so only
+ * the outermost codec call of a thread is measured. Wall time is read from {@link System#nanoTime()}, CPU time from
+ * the {@link ThreadMXBean} when the JVM supports and enables thread CPU time measurement.
+ */
+public final class CodecTimer {
+
+    private static final ThreadLocal<CodecTimer> TIMERS = ThreadLocal.withInitial(CodecTimer::new);
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final boolean CPU_TIME_SUPPORTED = THREADS.isCurrentThreadCpuTimeSupported() && THREADS.isThreadCpuTimeEnabled();
+
+    private int depth;
+    private long startWallNanos;
+    private long startCpuNanos;
+
+    private CodecTimer() {
+    }
+
+    public static CodecTimer current() {
+        return TIMERS.get();
+    }
+
+    public void start() {
+        if (depth++ == 0) {
+            startCpuNanos = CPU_TIME_SUPPORTED ? THREADS.getCurrentThreadCpuTime() : 0;
+            startWallNanos = System.nanoTime();
+        }
+    }
+
+    /**
+     * Records the codec call ending, if it is the outermost one, into the meters of {@code type}. Encoding runs while
+     * the operation storing the document executes, so its timings are also tagged on the span of that operation, if
+     * any. Decoding usually runs in {@code GetResult#contentAs} after the operation has returned, where the span open
+     * on the thread, if any, belongs to another operation, so it is only recorded in the meters.
+     */
+    public void stop(Class<?> type, boolean encode) {
+        if (depth == 0 || --depth > 0) {
+            return;
+        }
+        long wallNanos = System.nanoTime() - startWallNanos;
+        long cpuNanos = CPU_TIME_SUPPORTED ? THREADS.getCurrentThreadCpuTime() - startCpuNanos : -1;
+        CodecMeters.of(type).record(encode, wallNanos, cpuNanos);
+        if (!encode) {
+            return;
+        }
+        AbstractSpan span = InvocationFrames.current().getOperationSpan();
+        if (span != null) {
+            span.tag(CouchbaseTags.ENCODE_WALL_US, Long.toString(TimeUnit.NANOSECONDS.toMicros(wallNanos)));
+            if (cpuNanos >= 0) {
+                span.tag(CouchbaseTags.ENCODE_CPU_US, Long.toString(TimeUnit.NANOSECONDS.toMicros(cpuNanos)));
+            }
+        }
+    }
+}
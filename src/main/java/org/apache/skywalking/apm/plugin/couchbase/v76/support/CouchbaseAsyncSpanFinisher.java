@@ -0,0 +1,68 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.skywalking.apm.plugin.couchbase.v76.support;
+
+import org.apache.skywalking.apm.agent.core.context.trace.AbstractSpan;
+
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.function.BiConsumer;
+
+/**
+ * Finishes a span that has been {@link AbstractSpan#prepareForAsync() prepared for async} once the
+ * {@code CompletableFuture} returned by the SDK completes. It is registered through {@code whenComplete}, so it runs
+ * inline on the thread that completes the future and never adds a thread hop to the SDK's completion path. The
+ * latency of the operation is recorded into its {@link OperationMetrics} at the same time.
+ */
+public class CouchbaseAsyncSpanFinisher implements BiConsumer<Object, Throwable> {
+
+    private final AbstractSpan span;
+    private final OperationMetrics metrics;
+    private final long startNanos;
+
+    /**
+     * @param metrics the metrics of the operation, or null if not recorded
+     */
+    public CouchbaseAsyncSpanFinisher(AbstractSpan span, OperationMetrics metrics, long startNanos) {
+        this.span = span;
+        this.metrics = metrics;
+        this.startNanos = startNanos;
+    }
+
+    @Override
+    public void accept(Object result, Throwable throwable) {
+        if (metrics != null) {
+            metrics.record(System.nanoTime() - startNanos, throwable != null);
+        }
+        if (throwable != null) {
+            CouchbaseSpanHelper.logError(span, throwable);
+        } else {
+            CouchbaseSpanHelper.tagResultMetaData(span, result);
+        }
+        span.asyncFinish();
+    }
+
+    public static Throwable unwrap(Throwable throwable) {
+        Throwable cause = throwable;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException) && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+}
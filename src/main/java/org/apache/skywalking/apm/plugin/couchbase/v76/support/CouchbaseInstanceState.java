@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.skywalking.apm.plugin.couchbase.v76.support;
+
+import com.couchbase.client.core.Core;
+import com.couchbase.client.java.AsyncCollection;
+import com.couchbase.client.java.Collection;
+import com.couchbase.client.java.ReactiveCollection;
+import org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance.EnhancedInstance;
+import org.apache.skywalking.apm.plugin.couchbase.v76.CouchbasePluginConfig;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * State the plugin keeps for an enhanced {@code Collection}, {@code AsyncCollection}, {@code ReactiveCollection} or
+ * {@code Cluster} or {@code Scope} of any flavour, stored in the SkyWalking dynamic field of the instance.
+ * <p>
+ * The token buckets limiting the spans per second are shared by the instances of the same sampling scope: the
+ * blocking, async and reactive flavours of one collection share the buckets of its keyspace, those of one cluster or
+ * scope the buckets of their {@code Core}. Each instance caches the buckets of its operations.
+ */
+public class CouchbaseInstanceState {
+
+    private static final ConcurrentMap<String, TokenBucket> SAMPLERS = new ConcurrentHashMap<>();
+
+    /**
+     * Guards the creation of the states, once per instance. The instances themselves are visible to the application,
+     * which may synchronize on them.
+     */
+    private static final Object CREATION_LOCK = new Object();
+
+    private final ConcurrentMap<OperationDescriptor, TokenBucket> samplers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<OperationDescriptor, OperationMetrics> metrics = new ConcurrentHashMap<>();
+    private volatile boolean peerResolved;
+    private volatile String peer;
+    private volatile boolean hotKeysResolved;
+    private volatile HotKeys hotKeys;
+
+    public static CouchbaseInstanceState of(EnhancedInstance objInst) {
+        Object state = objInst.getSkyWalkingDynamicField();
+        if (state instanceof CouchbaseInstanceState) {
+            return (CouchbaseInstanceState) state;
+        }
+        synchronized (CREATION_LOCK) {
+            state = objInst.getSkyWalkingDynamicField();
+            if (state instanceof CouchbaseInstanceState) {
+                return (CouchbaseInstanceState) state;
+            }
+            CouchbaseInstanceState created = new CouchbaseInstanceState();
+            objInst.setSkyWalkingDynamicField(created);
+            return created;
+        }
+    }
+
+    /**
+     * @return the remote peer of the cluster the instance belongs to, resolved on first use
+     */
+    public static String peerOf(EnhancedInstance objInst) {
+        CouchbaseInstanceState state = of(objInst);
+        if (!state.peerResolved) {
+            state.peer = CouchbaseRemotePeerHelper.getRemotePeer(objInst);
+            state.peerResolved = true;
+        }
+        return state.peer;
+    }
+
+    /**
+     * @return the metrics every call of the operation is recorded into, or null if operation metrics are disabled
+     */
+    public static OperationMetrics metricsOf(EnhancedInstance objInst, OperationDescriptor descriptor) {
+        if (!CouchbasePluginConfig.Plugin.Couchbase.OPERATION_METRICS) {
+            return null;
+        }
+        CouchbaseInstanceState state = of(objInst);
+        OperationMetrics operationMetrics = state.metrics.get(descriptor);
+        if (operationMetrics == null) {
+            operationMetrics = CouchbaseMeters.of(objInst, descriptor);
+            OperationMetrics previous = state.metrics.putIfAbsent(descriptor, operationMetrics);
+            if (previous != null) {
+                operationMetrics = previous;
+            }
+        }
+        return operationMetrics;
+    }
+
+    /**
+     * @return the hot keys of the collection of the instance, resolved on first use, or null if it is not a collection
+     */
+    static HotKeys hotKeysOf(EnhancedInstance objInst) {
+        CouchbaseInstanceState state = of(objInst);
+        if (!state.hotKeysResolved) {
+            state.hotKeys = HotKeys.of(objInst);
+            state.hotKeysResolved = true;
+        }
+        return state.hotKeys;
+    }
+
+    /**
+     * @return whether a span should be created for this call, according to the per operation limit of the descriptor
+     */
+    public static boolean isSampled(EnhancedInstance objInst, OperationDescriptor descriptor) {
+        int limit = descriptor.getSpansPerSecond();
+        if (limit < 0) {
+            return true;
+        }
+        return of(objInst).tryAcquire(objInst, descriptor, limit);
+    }
+
+    private boolean tryAcquire(EnhancedInstance objInst, OperationDescriptor descriptor, int limit) {
+        TokenBucket bucket = samplers.get(descriptor);
+        if (bucket == null) {
+            String key = samplingScopeOf(objInst) + "/" + descriptor.getOperation();
+            bucket = SAMPLERS.computeIfAbsent(key, k -> new TokenBucket(limit));
+            TokenBucket previous = samplers.putIfAbsent(descriptor, bucket);
+            if (previous != null) {
+                bucket = previous;
+            }
+        }
+        return bucket.tryAcquire();
+    }
+
+    private static String samplingScopeOf(Object instance) {
+        if (instance instanceof Collection) {
+            Collection collection = (Collection) instance;
+            return collection.bucketName() + "." + collection.scopeName() + "." + collection.name();
+        } else if (instance instanceof AsyncCollection) {
+            AsyncCollection collection = (AsyncCollection) instance;
+            return collection.bucketName() + "." + collection.scopeName() + "." + collection.name();
+        } else if (instance instanceof ReactiveCollection) {
+            ReactiveCollection collection = (ReactiveCollection) instance;
+            return collection.bucketName() + "." + collection.scopeName() + "." + collection.name();
+        }
+        Core core = CouchbaseRemotePeerHelper.coreOf(instance);
+        if (core != null) {
+            return "core-" + core.context().id();
+        }
+        return "instance-" + System.identityHashCode(instance);
+    }
+}
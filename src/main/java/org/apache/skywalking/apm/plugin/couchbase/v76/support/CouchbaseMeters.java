@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.skywalking.apm.plugin.couchbase.v76.support;
+
+import com.couchbase.client.java.AsyncCollection;
+import com.couchbase.client.java.Collection;
+import com.couchbase.client.java.ReactiveCollection;
+import org.apache.skywalking.apm.agent.core.boot.DefaultNamedThreadFactory;
+import org.apache.skywalking.apm.agent.core.logging.api.ILog;
+import org.apache.skywalking.apm.agent.core.logging.api.LogManager;
+import org.apache.skywalking.apm.agent.core.meter.MeterTag;
+import org.apache.skywalking.apm.plugin.couchbase.v76.CouchbasePluginConfig;
+import org.apache.skywalking.apm.util.RunnableWithExceptionProtection;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Registry of the {@link OperationMetrics} of the plugin, and the background task exporting them through the
+ * SkyWalking meter API every {@code plugin.couchbase.meter_flush_interval_ms}.
+ * <ul>
+ *     <li>{@code couchbase_operation_latency}, {@code couchbase_operation_calls} and
+ *     {@code couchbase_operation_errors}, tagged with {@code bucket}, {@code scope}, {@code collection} and
+ *     {@code operation}, for key-value operations.</li>
+ *     <li>{@code couchbase_query_latency}, {@code couchbase_query_calls} and {@code couchbase_query_errors}, tagged
+ *     with {@code query_type}, for cluster level queries.</li>
+ * </ul>
+ * Latencies are in microseconds, bucketed by {@link NodeLatencyMeters#LATENCY_STEPS_US}.
+ */
+public final class CouchbaseMeters {
+
+    private static final ILog LOGGER = LogManager.getLogger(CouchbaseMeters.class);
+
+    private static final ConcurrentMap<List<MeterTag>, OperationMetrics> METRICS = new ConcurrentHashMap<>();
+
+    static {
+        long interval = Math.max(CouchbasePluginConfig.Plugin.Couchbase.METER_FLUSH_INTERVAL_MS, 100);
+        Executors.newSingleThreadScheduledExecutor(new DefaultNamedThreadFactory("CouchbaseMeterFlush"))
+                 .scheduleAtFixedRate(
+                     new RunnableWithExceptionProtection(
+                         CouchbaseMeters::flush, t -> LOGGER.error(t, "Failed to flush couchbase meters.")),
+                     interval, interval, TimeUnit.MILLISECONDS
+                 );
+    }
+
+    private CouchbaseMeters() {
+    }
+
+    /**
+     * @param instance the enhanced {@code Collection}, {@code AsyncCollection}, {@code ReactiveCollection} or
+     *                 {@code Cluster}
+     * @return the metrics of the operation, shared by all instances with the same bucket, scope and collection
+     */
+    static OperationMetrics of(Object instance, OperationDescriptor descriptor) {
+        List<MeterTag> tags;
+        String namePrefix;
+        if (instance instanceof Collection) {
+            Collection collection = (Collection) instance;
+            tags = keyspaceTags(collection.bucketName(), collection.scopeName(), collection.name(), descriptor);
+            namePrefix = "couchbase_operation";
+        } else if (instance instanceof AsyncCollection) {
+            AsyncCollection collection = (AsyncCollection) instance;
+            tags = keyspaceTags(collection.bucketName(), collection.scopeName(), collection.name(), descriptor);
+            namePrefix = "couchbase_operation";
+        } else if (instance instanceof ReactiveCollection) {
+            ReactiveCollection collection = (ReactiveCollection) instance;
+            tags = keyspaceTags(collection.bucketName(), collection.scopeName(), collection.name(), descriptor);
+            namePrefix = "couchbase_operation";
+        } else {
+            tags = Arrays.asList(new MeterTag("query_type", descriptor.getOperation()));
+            namePrefix = "couchbase_query";
+        }
+        return METRICS.computeIfAbsent(tags, key -> new OperationMetrics(namePrefix, key));
+    }
+
+    private static List<MeterTag> keyspaceTags(String bucket, String scope, String collection, OperationDescriptor descriptor) {
+        return Arrays.asList(
+            new MeterTag("bucket", bucket),
+            new MeterTag("collection", collection),
+            new MeterTag("operation", descriptor.getOperation()),
+            new MeterTag("scope", scope)
+        );
+    }
+
+    private static void flush() {
+        for (OperationMetrics metrics : METRICS.values()) {
+            metrics.flush();
+        }
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.skywalking.apm.plugin.couchbase.v76.support;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable description of the cluster a {@code Core} connects to, resolved once from its connection string.
+ */
+public class CouchbasePeerInfo {
+
+    private final String peer;
+    private final List<String> hosts;
+    private final boolean tls;
+
+    public CouchbasePeerInfo(List<String> hosts, boolean tls) {
+        this.hosts = Collections.unmodifiableList(hosts);
+        this.peer = String.join(",", hosts);
+        this.tls = tls;
+    }
+
+    /**
+     * @return the seed nodes as comma separated {@code host:port}, the format SkyWalking expects for cluster peers
+     */
+    public String getPeer() {
+        return peer;
+    }
+
+    public List<String> getHosts() {
+        return hosts;
+    }
+
+    public boolean isTls() {
+        return tls;
+    }
+}
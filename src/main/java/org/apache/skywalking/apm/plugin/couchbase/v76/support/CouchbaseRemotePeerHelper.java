@@ -18,11 +18,128 @@
 
 package org.apache.skywalking.apm.plugin.couchbase.v76.support;
 
+import com.couchbase.client.core.Core;
 import com.couchbase.client.core.env.CoreEnvironment;
+import com.couchbase.client.core.util.ConnectionString;
+import com.couchbase.client.java.AsyncCluster;
+import com.couchbase.client.java.AsyncCollection;
+import com.couchbase.client.java.AsyncScope;
+import com.couchbase.client.java.Cluster;
+import com.couchbase.client.java.Collection;
+import com.couchbase.client.java.ReactiveCluster;
+import com.couchbase.client.java.ReactiveCollection;
+import com.couchbase.client.java.ReactiveScope;
+import com.couchbase.client.java.Scope;
+import org.apache.skywalking.apm.agent.core.logging.api.ILog;
+import org.apache.skywalking.apm.agent.core.logging.api.LogManager;
+import org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance.EnhancedInstance;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
 
 public class CouchbaseRemotePeerHelper {
-    public static String getRemotePeer(CoreEnvironment env) {
-        // TODO: Implement logic to extract remote peer info from CoreEnvironment
-        return "couchbase-remote-peer";
+
+    private static final ILog LOGGER = LogManager.getLogger(CouchbaseRemotePeerHelper.class);
+
+    private static final int DEFAULT_KV_PORT = 11210;
+    private static final int DEFAULT_KV_TLS_PORT = 11207;
+    private static final int DEFAULT_PROTOSTELLAR_PORT = 18098;
+
+    /**
+     * The connection string is only kept in a private field of {@code Core}, which is already set when the
+     * {@code CoreContext} is constructed. It is read once per {@code Core}.
+     */
+    private static volatile Field CONNECTION_STRING_FIELD;
+
+    public static CouchbasePeerInfo resolve(Core core, CoreEnvironment env) {
+        boolean tls = false;
+        try {
+            tls = env.securityConfig().tlsEnabled();
+        } catch (Exception ignored) { }
+        ConnectionString connectionString = connectionStringOf(core);
+        if (connectionString == null) {
+            return null;
+        }
+        tls |= connectionString.scheme() == ConnectionString.Scheme.COUCHBASES;
+        List<String> hosts = new ArrayList<>(connectionString.hosts().size());
+        for (ConnectionString.UnresolvedSocket socket : connectionString.hosts()) {
+            hosts.add(socket.host() + ":" + kvPort(connectionString.scheme(), socket, tls));
+        }
+        return new CouchbasePeerInfo(hosts, tls);
+    }
+
+    /**
+     * @return the peer of the cluster the given {@code Collection}, {@code AsyncCollection},
+     * {@code ReactiveCollection}, cluster or scope instance belongs to, or null if unknown
+     */
+    public static String getRemotePeer(Object couchbaseInstance) {
+        Core core = coreOf(couchbaseInstance);
+        if (core == null) {
+            return null;
+        }
+        Object context = core.context();
+        if (context instanceof EnhancedInstance) {
+            Object peerInfo = ((EnhancedInstance) context).getSkyWalkingDynamicField();
+            if (peerInfo instanceof CouchbasePeerInfo) {
+                return ((CouchbasePeerInfo) peerInfo).getPeer();
+            }
+        }
+        return null;
+    }
+
+    static Core coreOf(Object couchbaseInstance) {
+        try {
+            if (couchbaseInstance instanceof Collection) {
+                return ((Collection) couchbaseInstance).core();
+            } else if (couchbaseInstance instanceof AsyncCollection) {
+                return ((AsyncCollection) couchbaseInstance).core();
+            } else if (couchbaseInstance instanceof ReactiveCollection) {
+                return ((ReactiveCollection) couchbaseInstance).core();
+            } else if (couchbaseInstance instanceof Cluster) {
+                return ((Cluster) couchbaseInstance).core();
+            } else if (couchbaseInstance instanceof AsyncCluster) {
+                return ((AsyncCluster) couchbaseInstance).core();
+            } else if (couchbaseInstance instanceof ReactiveCluster) {
+                return ((ReactiveCluster) couchbaseInstance).core();
+            } else if (couchbaseInstance instanceof Scope) {
+                return ((Scope) couchbaseInstance).core();
+            } else if (couchbaseInstance instanceof AsyncScope) {
+                return ((AsyncScope) couchbaseInstance).core();
+            } else if (couchbaseInstance instanceof ReactiveScope) {
+                return ((ReactiveScope) couchbaseInstance).core();
+            }
+        } catch (Exception ignored) { }
+        return null;
+    }
+
+    private static int kvPort(ConnectionString.Scheme scheme, ConnectionString.UnresolvedSocket socket, boolean tls) {
+        boolean explicitKvPort = socket.port() > 0
+            && (!socket.portType().isPresent() || socket.portType().get() == ConnectionString.PortType.KV);
+        if (explicitKvPort) {
+            return socket.port();
+        }
+        if (scheme == ConnectionString.Scheme.COUCHBASE2) {
+            return DEFAULT_PROTOSTELLAR_PORT;
+        }
+        return tls ? DEFAULT_KV_TLS_PORT : DEFAULT_KV_PORT;
+    }
+
+    private static ConnectionString connectionStringOf(Core core) {
+        if (core == null) {
+            return null;
+        }
+        try {
+            Field field = CONNECTION_STRING_FIELD;
+            if (field == null) {
+                field = Core.class.getDeclaredField("connectionString");
+                field.setAccessible(true);
+                CONNECTION_STRING_FIELD = field;
+            }
+            return (ConnectionString) field.get(core);
+        } catch (Exception e) {
+            LOGGER.warn("Failed to read the couchbase connection string, spans will have no peer: {}", e.getMessage());
+            return null;
+        }
     }
 }
@@ -18,47 +18,264 @@
 
 package org.apache.skywalking.apm.plugin.couchbase.v76.support;
 
+import com.couchbase.client.core.api.query.CoreQueryScanConsistency;
+import com.couchbase.client.core.api.search.queries.CoreSearchRequest;
 import com.couchbase.client.java.Collection;
-import com.couchbase.client.java.Cluster;
+import com.couchbase.client.java.analytics.AnalyticsMetaData;
+import com.couchbase.client.java.analytics.AnalyticsMetrics;
+import com.couchbase.client.java.analytics.AnalyticsResult;
+import com.couchbase.client.java.analytics.AnalyticsWarning;
+import com.couchbase.client.java.kv.GetResult;
+import com.couchbase.client.java.query.QueryMetaData;
+import com.couchbase.client.java.query.QueryMetrics;
+import com.couchbase.client.java.query.QueryOptions;
+import com.couchbase.client.java.query.QueryResult;
+import com.couchbase.client.java.query.QueryWarning;
+import com.couchbase.client.java.search.SearchMetaData;
+import com.couchbase.client.java.search.SearchQuery;
+import com.couchbase.client.java.search.SearchRequest;
+import com.couchbase.client.java.search.result.SearchMetrics;
+import com.couchbase.client.java.search.result.SearchResult;
+import org.apache.skywalking.apm.agent.core.context.tag.StringTag;
+import org.apache.skywalking.apm.agent.core.context.tag.Tags;
 import org.apache.skywalking.apm.agent.core.context.trace.AbstractSpan;
+import org.apache.skywalking.apm.plugin.couchbase.v76.CouchbasePluginConfig;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 public class CouchbaseSpanHelper {
+    // Kind of a search query, its simple class name without the Core prefix of the core queries
+    private static final ClassValue<String> SEARCH_KINDS = new ClassValue<String>() {
+        @Override
+        protected String computeValue(Class<?> type) {
+            String name = type.getSimpleName();
+            return name.startsWith("Core") ? name.substring(4) : name;
+        }
+    };
+
     // Tag bucket name if available
     public static void tagBucketName(AbstractSpan span, String bucketName) {
         if (bucketName != null && !bucketName.isEmpty()) {
-            span.tag("db.bucket", bucketName);
+            span.tag(CouchbaseTags.DB_BUCKET, bucketName);
         }
     }
 
     // Tag scope name if available
     public static void tagScopeName(AbstractSpan span, String scopeName) {
         if (scopeName != null && !scopeName.isEmpty()) {
-            span.tag("db.scope", scopeName);
+            span.tag(CouchbaseTags.DB_SCOPE, scopeName);
         }
     }
 
     // Tag SDK version
     public static void tagSdkVersion(AbstractSpan span, String sdkVersion) {
         if (sdkVersion != null && !sdkVersion.isEmpty()) {
-            span.tag("couchbase.sdk.version", sdkVersion);
+            span.tag(CouchbaseTags.SDK_VERSION, sdkVersion);
         }
     }
 
     // Tag operation result status
     public static void tagResultStatus(AbstractSpan span, String status) {
         if (status != null && !status.isEmpty()) {
-            span.tag("db.result.status", status);
+            span.tag(CouchbaseTags.DB_RESULT_STATUS, status);
         }
     }
 
+    // Analytics statements are SQL++, normalized like query statements
     public static void tagAnalyticsQueryInfo(AbstractSpan span, String statement) {
-        span.tag("db.type", "couchbase-analytics");
-        span.tag("db.statement", truncateStatement(statement));
+        span.tag(Tags.DB_TYPE, "couchbase-analytics");
+        tagStatement(span, statement);
     }
 
+    // Search statements are the index name and the kind of query, which the statement normalizer would erase
     public static void tagSearchQueryInfo(AbstractSpan span, String statement) {
-        span.tag("db.type", "couchbase-search");
-        span.tag("db.statement", truncateStatement(statement));
+        span.tag(Tags.DB_TYPE, "couchbase-search");
+        span.tag(Tags.DB_STATEMENT, truncateStatement(statement));
+    }
+
+    // Tag the statement of a query, analytics or search operation
+    public static void tagServiceStatement(AbstractSpan span, OperationDescriptor descriptor, String statement) {
+        switch (descriptor.getOperation()) {
+            case "analyticsQuery":
+                tagAnalyticsQueryInfo(span, statement);
+                break;
+            case "search":
+            case "searchQuery":
+                tagSearchQueryInfo(span, statement);
+                break;
+            default:
+                tagStatement(span, statement);
+        }
+    }
+
+    // Statement of a query, analytics or search call: the index name, followed by the kind of search if requested
+    public static String serviceStatementOf(OperationDescriptor descriptor, Object[] allArguments, boolean withRequest) {
+        switch (descriptor.getOperation()) {
+            case "search":
+            case "searchQuery":
+                String index = String.valueOf(allArguments[0]);
+                if (!withRequest) {
+                    return index;
+                }
+                Object request = allArguments[1];
+                if (request instanceof SearchRequest) {
+                    CoreSearchRequest coreRequest = ((SearchRequest) request).toCore();
+                    if (coreRequest.searchQuery == null) {
+                        return coreRequest.vectorSearch != null ? index + " VectorSearch" : index;
+                    }
+                    String kind = index + " " + SEARCH_KINDS.get(coreRequest.searchQuery.getClass());
+                    return coreRequest.vectorSearch != null ? kind + "+VectorSearch" : kind;
+                }
+                if (request instanceof SearchQuery) {
+                    return index + " " + SEARCH_KINDS.get(request.getClass());
+                }
+                return index;
+            default:
+                return allArguments[0] != null ? allArguments[0].toString() : "";
+        }
+    }
+
+    // Tag the metadata of a blocking or async query, analytics or search result
+    public static void tagResultMetaData(AbstractSpan span, Object result) {
+        if (result instanceof QueryResult) {
+            tagQueryMetaData(span, ((QueryResult) result).metaData());
+        } else if (result instanceof AnalyticsResult) {
+            tagAnalyticsMetaData(span, ((AnalyticsResult) result).metaData());
+        } else if (result instanceof SearchResult) {
+            tagSearchMetaData(span, ((SearchResult) result).metaData());
+        }
+    }
+
+    // Log a failure, tag its db.error.category and count it in the error meters
+    public static void logError(AbstractSpan span, Throwable t) {
+        Throwable cause = CouchbaseAsyncSpanFinisher.unwrap(t);
+        span.log(cause);
+        ErrorCategory category = ErrorCategory.of(cause);
+        span.tag(CouchbaseTags.DB_ERROR_CATEGORY, category.getName());
+        if (category.isTimeout()) {
+            span.tag(CouchbaseTags.DB_TIMEOUT, "true");
+        }
+        ErrorMeters.record(category);
+    }
+
+    // Tag the document key as configured by plugin.couchbase.document_id_mode
+    public static void tagDocumentId(AbstractSpan span, Object key) {
+        tagFormattedDocumentId(span, DocumentIdFormatter.format(key));
+    }
+
+    public static void tagFormattedDocumentId(AbstractSpan span, String formattedKey) {
+        if (formattedKey != null) {
+            span.tag(CouchbaseTags.DB_DOCUMENT_ID, formattedKey);
+        }
+    }
+
+    // Size of the document returned by an operation, 0 if the result carries no content
+    public static long resultSize(Object result) {
+        if (result instanceof GetResult) {
+            byte[] content = ((GetResult) result).contentAsBytes();
+            return content != null ? content.length : 0;
+        }
+        return 0;
+    }
+
+    // The options of a query call, built once to be shared by the query advisor and the span, null if called without
+    public static QueryOptions.Built queryOptionsOf(Object[] allArguments) {
+        return allArguments.length > 1 && allArguments[1] instanceof QueryOptions ? ((QueryOptions) allArguments[1]).build() : null;
+    }
+
+    // Tag whether a query runs adhoc, and its options which weigh on its latency when set
+    public static void tagQueryOptions(AbstractSpan span, QueryOptions.Built built) {
+        if (built == null) {
+            span.tag(CouchbaseTags.QUERY_ADHOC, "true");
+            return;
+        }
+        span.tag(CouchbaseTags.QUERY_ADHOC, Boolean.toString(built.adhoc()));
+        if (built.consistentWith() != null) {
+            span.tag(CouchbaseTags.QUERY_SCAN_CONSISTENCY, "at_plus");
+        } else if (built.scanConsistency() == CoreQueryScanConsistency.REQUEST_PLUS) {
+            span.tag(CouchbaseTags.QUERY_SCAN_CONSISTENCY, "request_plus");
+        } else if (built.scanConsistency() == CoreQueryScanConsistency.NOT_BOUNDED) {
+            span.tag(CouchbaseTags.QUERY_SCAN_CONSISTENCY, "not_bounded");
+        }
+        if (built.readonly()) {
+            span.tag(CouchbaseTags.QUERY_READONLY, "true");
+        }
+        if (built.maxParallelism() != null) {
+            span.tag(CouchbaseTags.QUERY_MAX_PARALLELISM, built.maxParallelism().toString());
+        }
+        if (built.pipelineBatch() != null) {
+            span.tag(CouchbaseTags.QUERY_PIPELINE_BATCH, built.pipelineBatch().toString());
+        }
+        if (built.pipelineCap() != null) {
+            span.tag(CouchbaseTags.QUERY_PIPELINE_CAP, built.pipelineCap().toString());
+        }
+        if (built.commonOptions().timeout().isPresent()) {
+            span.tag(CouchbaseTags.QUERY_TIMEOUT_MS, Long.toString(built.commonOptions().timeout().get().toMillis()));
+        }
+    }
+
+    // Tag the statement, normalized and fingerprinted unless statement normalization is disabled
+    public static void tagStatement(AbstractSpan span, String statement) {
+        if (CouchbasePluginConfig.Plugin.Couchbase.NORMALIZE_STATEMENT) {
+            StatementNormalizer.NormalizedStatement normalized = StatementNormalizer.normalize(statement);
+            span.tag(Tags.DB_STATEMENT, normalized.getStatement());
+            span.tag(CouchbaseTags.DB_STATEMENT_FINGERPRINT, normalized.getFingerprint());
+        } else {
+            span.tag(Tags.DB_STATEMENT, truncateStatement(statement));
+        }
+    }
+
+    // Tag the status, warnings and, if requested through QueryOptions#metrics, the metrics reported by the query service
+    public static void tagQueryMetaData(AbstractSpan span, QueryMetaData metaData) {
+        tagResultStatus(span, metaData.status().name());
+        Optional<QueryMetrics> metrics = metaData.metrics();
+        if (metrics.isPresent()) {
+            QueryMetrics queryMetrics = metrics.get();
+            span.tag(CouchbaseTags.QUERY_ELAPSED_US, Long.toString(TimeUnit.NANOSECONDS.toMicros(queryMetrics.elapsedTime().toNanos())));
+            span.tag(CouchbaseTags.QUERY_EXECUTION_US, Long.toString(TimeUnit.NANOSECONDS.toMicros(queryMetrics.executionTime().toNanos())));
+            span.tag(CouchbaseTags.QUERY_RESULT_COUNT, Long.toString(queryMetrics.resultCount()));
+            span.tag(CouchbaseTags.QUERY_RESULT_SIZE, Long.toString(queryMetrics.resultSize()));
+        }
+        tagJoined(span, CouchbaseTags.QUERY_WARNINGS, metaData.warnings(), QueryWarning::code, QueryWarning::message);
+    }
+
+    // Tag the status, warnings and metrics reported by the analytics service
+    public static void tagAnalyticsMetaData(AbstractSpan span, AnalyticsMetaData metaData) {
+        tagResultStatus(span, metaData.status().name());
+        AnalyticsMetrics metrics = metaData.metrics();
+        span.tag(CouchbaseTags.QUERY_ELAPSED_US, Long.toString(TimeUnit.NANOSECONDS.toMicros(metrics.elapsedTime().toNanos())));
+        span.tag(CouchbaseTags.QUERY_EXECUTION_US, Long.toString(TimeUnit.NANOSECONDS.toMicros(metrics.executionTime().toNanos())));
+        span.tag(CouchbaseTags.QUERY_RESULT_COUNT, Long.toString(metrics.resultCount()));
+        span.tag(CouchbaseTags.QUERY_RESULT_SIZE, Long.toString(metrics.resultSize()));
+        span.tag(CouchbaseTags.ANALYTICS_PROCESSED_OBJECTS, Long.toString(metrics.processedObjects()));
+        tagJoined(span, CouchbaseTags.QUERY_WARNINGS, metaData.warnings(), AnalyticsWarning::code, AnalyticsWarning::message);
+    }
+
+    // Tag the metrics and partition errors reported by the search service
+    public static void tagSearchMetaData(AbstractSpan span, SearchMetaData metaData) {
+        SearchMetrics metrics = metaData.metrics();
+        span.tag(CouchbaseTags.SEARCH_TOOK_US, Long.toString(TimeUnit.NANOSECONDS.toMicros(metrics.took().toNanos())));
+        span.tag(CouchbaseTags.SEARCH_TOTAL_HITS, Long.toString(metrics.totalRows()));
+        span.tag(CouchbaseTags.SEARCH_MAX_SCORE, Double.toString(metrics.maxScore()));
+        span.tag(CouchbaseTags.SEARCH_PARTITIONS, metrics.successPartitionCount() + "/" + metrics.totalPartitionCount());
+        tagJoined(span, CouchbaseTags.SEARCH_ERRORS, metaData.errors().entrySet(), Map.Entry::getKey, Map.Entry::getValue);
+    }
+
+    // Tag the "key: value" pairs of the items joined with "; ", truncated like a statement, unless there are none
+    private static <T> void tagJoined(AbstractSpan span, StringTag tag, Iterable<T> items, Function<T, ?> key, Function<T, ?> value) {
+        StringBuilder joined = new StringBuilder();
+        for (T item : items) {
+            if (joined.length() > 0) {
+                joined.append("; ");
+            }
+            joined.append(key.apply(item)).append(": ").append(value.apply(item));
+        }
+        if (joined.length() > 0) {
+            span.tag(tag, truncateStatement(joined.toString()));
+        }
     }
 
     public static String truncateStatement(String statement) {
@@ -73,21 +290,7 @@ public class CouchbaseSpanHelper {
         try {
             // The Couchbase Java SDK 3.x does not provide direct access to bucket/scope from Collection
             // so we only tag the collection name here.
-            span.tag("db.collection", collection.name());
-        } catch (Exception ignored) { }
-    }
-
-    public static void tagClusterInfo(AbstractSpan span, Cluster cluster) {
-        try {
-            // The Couchbase Java SDK 3.x does not provide direct access to seed nodes from ClusterEnvironment
-            // so we only tag the network resolution if available.
-            String connStr = null;
-            try {
-                connStr = cluster.environment().ioConfig().networkResolution().name();
-            } catch (Exception ignored) { }
-            if (connStr != null) {
-                span.tag("peer.address", connStr);
-            }
+            span.tag(CouchbaseTags.DB_COLLECTION, collection.name());
         } catch (Exception ignored) { }
     }
 }
@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.skywalking.apm.plugin.couchbase.v76.support;
+
+import org.apache.skywalking.apm.agent.core.context.tag.StringTag;
+
+/**
+ * Tag keys used by the couchbase plugin. Tagging through a shared {@link StringTag} avoids the tag object that
+ * {@code AbstractSpan#tag(String, String)} creates on every call.
+ */
+public final class CouchbaseTags {
+    public static final StringTag DB_OPERATION = new StringTag("db.operation");
+    public static final StringTag DB_DOCUMENT_ID = new StringTag("db.document.id");
+    public static final StringTag DB_BUCKET = new StringTag("db.bucket");
+    public static final StringTag DB_SCOPE = new StringTag("db.scope");
+    public static final StringTag DB_COLLECTION = new StringTag("db.collection");
+    public static final StringTag DB_STATEMENT_FINGERPRINT = new StringTag("db.statement.fingerprint");
+    public static final StringTag DB_RESULT_STATUS = new StringTag("db.result.status");
+    public static final StringTag QUERY_ELAPSED_US = new StringTag("db.query.elapsed_us");
+    public static final StringTag QUERY_EXECUTION_US = new StringTag("db.query.execution_us");
+    public static final StringTag QUERY_RESULT_COUNT = new StringTag("db.query.result_count");
+    public static final StringTag QUERY_RESULT_SIZE = new StringTag("db.query.result_size");
+    public static final StringTag QUERY_WARNINGS = new StringTag("db.query.warnings");
+    public static final StringTag QUERY_FIRST_ROW_US = new StringTag("db.query.first_row_us");
+    public static final StringTag QUERY_ROWS = new StringTag("db.query.rows");
+    public static final StringTag QUERY_BYTES = new StringTag("db.query.bytes");
+    public static final StringTag QUERY_ROWS_PER_SEC = new StringTag("db.query.rows_per_sec");
+    public static final StringTag QUERY_ABANDONED = new StringTag("db.query.abandoned");
+    public static final StringTag QUERY_ADHOC = new StringTag("db.query.adhoc");
+    public static final StringTag QUERY_SCAN_CONSISTENCY = new StringTag("db.query.scan_consistency");
+    public static final StringTag QUERY_READONLY = new StringTag("db.query.readonly");
+    public static final StringTag QUERY_MAX_PARALLELISM = new StringTag("db.query.max_parallelism");
+    public static final StringTag QUERY_PIPELINE_BATCH = new StringTag("db.query.pipeline_batch");
+    public static final StringTag QUERY_PIPELINE_CAP = new StringTag("db.query.pipeline_cap");
+    public static final StringTag QUERY_TIMEOUT_MS = new StringTag("db.query.timeout_ms");
+    public static final StringTag SCAN_TYPE = new StringTag("db.scan.type");
+    public static final StringTag SCAN_IDS_ONLY = new StringTag("db.scan.ids_only");
+    public static final StringTag SCAN_FIRST_ITEM_US = new StringTag("db.scan.first_item_us");
+    public static final StringTag SCAN_ITEMS = new StringTag("db.scan.items");
+    public static final StringTag SCAN_ITEMS_PER_SEC = new StringTag("db.scan.items_per_sec");
+    public static final StringTag SCAN_BYTES = new StringTag("db.scan.bytes");
+    public static final StringTag SCAN_PARTITIONS = new StringTag("db.scan.partitions");
+    public static final StringTag SCAN_PARTITIONS_COMPLETED = new StringTag("db.scan.partitions_completed");
+    public static final StringTag SCAN_SLOWEST_PARTITION = new StringTag("db.scan.slowest_partition");
+    public static final StringTag SCAN_SLOWEST_PARTITION_US = new StringTag("db.scan.slowest_partition_us");
+    public static final StringTag ANALYTICS_PROCESSED_OBJECTS = new StringTag("db.analytics.processed_objects");
+    public static final StringTag SEARCH_TOOK_US = new StringTag("db.search.took_us");
+    public static final StringTag SEARCH_TOTAL_HITS = new StringTag("db.search.total_hits");
+    public static final StringTag SEARCH_MAX_SCORE = new StringTag("db.search.max_score");
+    public static final StringTag SEARCH_PARTITIONS = new StringTag("db.search.partitions");
+    public static final StringTag SEARCH_ERRORS = new StringTag("db.search.errors");
+    public static final StringTag TRANSACTION_OUTCOME = new StringTag("db.transaction.outcome");
+    public static final StringTag TRANSACTION_ATTEMPTS = new StringTag("db.transaction.attempts");
+    public static final StringTag TRANSACTION_ATTEMPT = new StringTag("db.transaction.attempt");
+    public static final StringTag TRANSACTION_CONFLICTS = new StringTag("db.transaction.conflicts");
+    public static final StringTag TRANSACTION_RETRY_US = new StringTag("db.transaction.retry_us");
+    public static final StringTag TRANSACTION_COMMIT_US = new StringTag("db.transaction.commit_us");
+    public static final StringTag TRANSACTION_ROLLBACK_US = new StringTag("db.transaction.rollback_us");
+    public static final StringTag DB_TIMEOUT = new StringTag("db.timeout");
+    public static final StringTag DB_ERROR_CATEGORY = new StringTag("db.error.category");
+    public static final StringTag DB_CANCELLED = new StringTag("db.cancelled");
+    public static final StringTag DB_AGGREGATED = new StringTag("db.aggregated");
+    public static final StringTag DB_AGGREGATED_COUNT = new StringTag("db.aggregated.count");
+    public static final StringTag DB_AGGREGATED_BYTES = new StringTag("db.aggregated.bytes");
+    public static final StringTag DB_AGGREGATED_ERRORS = new StringTag("db.aggregated.errors");
+    public static final StringTag DB_AGGREGATED_MIN_US = new StringTag("db.aggregated.min_us");
+    public static final StringTag DB_AGGREGATED_MAX_US = new StringTag("db.aggregated.max_us");
+    public static final StringTag DB_AGGREGATED_P50_US = new StringTag("db.aggregated.p50_us");
+    public static final StringTag DB_AGGREGATED_P99_US = new StringTag("db.aggregated.p99_us");
+    public static final StringTag REQUEST_BYTES = new StringTag(-1, "db.request.bytes", true);
+    public static final StringTag RESPONSE_BYTES = new StringTag(-1, "db.response.bytes", true);
+    public static final StringTag DB_DOCUMENT_OVERSIZED = new StringTag(-1, "db.document.oversized", true);
+    public static final StringTag ENCODE_WALL_US = new StringTag(-1, "db.codec.encode_wall_us", true);
+    public static final StringTag ENCODE_CPU_US = new StringTag(-1, "db.codec.encode_cpu_us", true);
+    public static final StringTag NODE = new StringTag("couchbase.node");
+    public static final StringTag VBUCKET = new StringTag("couchbase.vbucket");
+    public static final StringTag ENDPOINT = new StringTag("couchbase.endpoint");
+    public static final StringTag ENCODE_US = new StringTag("couchbase.encode_us");
+    public static final StringTag DISPATCH_US = new StringTag("couchbase.dispatch_us");
+    public static final StringTag SERVER_US = new StringTag("couchbase.server_us");
+    public static final StringTag QUEUE_US = new StringTag("couchbase.queue_us");
+    public static final StringTag RETRIES = new StringTag("couchbase.retries");
+    public static final StringTag RETRY_REASONS = new StringTag("couchbase.retry_reasons");
+    public static final StringTag RETRY_BACKOFF_MS = new StringTag("couchbase.retry_backoff_ms");
+    public static final StringTag ERROR = new StringTag("error");
+    public static final StringTag SDK_VERSION = new StringTag("couchbase.sdk.version");
+
+    private CouchbaseTags() {
+    }
+}
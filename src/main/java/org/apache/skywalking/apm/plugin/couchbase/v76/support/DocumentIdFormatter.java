@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.skywalking.apm.plugin.couchbase.v76.support;
+
+import org.apache.skywalking.apm.plugin.couchbase.v76.CouchbasePluginConfig;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Turns a document key into the value tagged as {@code db.document.id}, according to
+ * {@code plugin.couchbase.document_id_mode}.
+ * <p>
+ * In {@code PATTERN} mode the key is split on {@code : / | # . _} and every segment is replaced by its shape:
+ * {@code {n}} for numbers, {@code {uuid}} for UUIDs, {@code {hex}} for long hex strings, {@code {id}} for other
+ * segments containing digits and {@code {s}} for long words. Short words are kept, so {@code order::2026::<uuid>}
+ * becomes {@code order::{n}::{uuid}}. Learned shapes are kept in a fixed size table, a key with a known shape only
+ * costs a scan of the key.
+ */
+public final class DocumentIdFormatter {
+
+    private static final int MAX_LITERAL_LENGTH = 32;
+
+    private static final ThreadLocal<StringBuilder> SHAPE_BUILDER = ThreadLocal.withInitial(() -> new StringBuilder(64));
+
+    private static final AtomicReferenceArray<String> SHAPES =
+        new AtomicReferenceArray<>(tableSize(CouchbasePluginConfig.Plugin.Couchbase.DOCUMENT_ID_PATTERN_CACHE_SIZE));
+
+    private DocumentIdFormatter() {
+    }
+
+    /**
+     * @return the value to tag, or null if the document id must not be tagged
+     */
+    public static String format(Object key) {
+        if (key == null) {
+            return null;
+        }
+        switch (CouchbasePluginConfig.Plugin.Couchbase.DOCUMENT_ID_MODE) {
+            case OFF:
+                return null;
+            case HASH:
+                return Fingerprint.of(key.toString());
+            case PATTERN:
+                return pattern(key.toString());
+            default:
+                return CouchbaseSpanHelper.truncateStatement(key.toString());
+        }
+    }
+
+    static String pattern(String key) {
+        StringBuilder shape = SHAPE_BUILDER.get();
+        shape.setLength(0);
+        int length = key.length();
+        int start = 0;
+        for (int i = 0; i <= length; i++) {
+            if (i == length || isSeparator(key.charAt(i))) {
+                appendSegmentShape(shape, key, start, i);
+                if (i < length) {
+                    shape.append(key.charAt(i));
+                }
+                start = i + 1;
+            }
+        }
+        return canonical(shape);
+    }
+
+    private static String canonical(StringBuilder shape) {
+        int hash = 0;
+        for (int i = 0, length = shape.length(); i < length; i++) {
+            hash = 31 * hash + shape.charAt(i);
+        }
+        int slot = (hash ^ (hash >>> 16)) & (SHAPES.length() - 1);
+        String known = SHAPES.get(slot);
+        if (known != null && known.contentEquals(shape)) {
+            return known;
+        }
+        String learned = shape.toString();
+        SHAPES.set(slot, learned);
+        return learned;
+    }
+
+    private static void appendSegmentShape(StringBuilder shape, String key, int start, int end) {
+        int length = end - start;
+        if (length == 0) {
+            return;
+        }
+        boolean allDigits = true;
+        boolean allHex = true;
+        boolean hasDigit = false;
+        for (int i = start; i < end; i++) {
+            char c = key.charAt(i);
+            boolean digit = c >= '0' && c <= '9';
+            hasDigit |= digit;
+            allDigits &= digit;
+            allHex &= digit || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+        }
+        if (allDigits) {
+            shape.append("{n}");
+        } else if (isUuid(key, start, length)) {
+            shape.append("{uuid}");
+        } else if (allHex && length >= 16) {
+            shape.append("{hex}");
+        } else if (hasDigit) {
+            shape.append("{id}");
+        } else if (length > MAX_LITERAL_LENGTH) {
+            shape.append("{s}");
+        } else {
+            shape.append(key, start, end);
+        }
+    }
+
+    private static boolean isUuid(String key, int start, int length) {
+        if (length != 36) {
+            return false;
+        }
+        for (int i = 0; i < 36; i++) {
+            char c = key.charAt(start + i);
+            if (i == 8 || i == 13 || i == 18 || i == 23) {
+                if (c != '-') {
+                    return false;
+                }
+            } else if (!((c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F'))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isSeparator(char c) {
+        return c == ':' || c == '/' || c == '|' || c == '#' || c == '.' || c == '_';
+    }
+
+    private static int tableSize(int size) {
+        int tableSize = 1;
+        while (tableSize < size) {
+            tableSize <<= 1;
+        }
+        return tableSize;
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.skywalking.apm.plugin.couchbase.v76.support;
+
+import com.couchbase.client.core.deps.io.netty.channel.Channel;
+import com.couchbase.client.core.deps.io.netty.channel.ChannelConfig;
+import com.couchbase.client.core.endpoint.Endpoint;
+import com.couchbase.client.core.endpoint.EndpointState;
+import org.apache.skywalking.apm.agent.core.boot.DefaultNamedThreadFactory;
+import org.apache.skywalking.apm.agent.core.logging.api.ILog;
+import org.apache.skywalking.apm.agent.core.logging.api.LogManager;
+import org.apache.skywalking.apm.agent.core.meter.Gauge;
+import org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance.EnhancedInstance;
+import org.apache.skywalking.apm.plugin.couchbase.v76.CouchbasePluginConfig;
+import org.apache.skywalking.apm.util.RunnableWithExceptionProtection;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Background sampler of the endpoint pools of every {@code Core}, every {@code plugin.couchbase.pool_sample_interval_ms}.
+ * Endpoints are registered when they are created, and the sampler only reads their state, so requests do no extra
+ * work. The endpoints of a core are dropped when it is shut down. The samples are summed over all cores, and exported
+ * as gauges tagged with the {@code node} and the {@code service}, which stop being reported once no core has an
+ * endpoint to that node and service left:
+ * <ul>
+ *     <li>{@code couchbase_endpoints}, additionally tagged with the endpoint {@code state}.</li>
+ *     <li>{@code couchbase_endpoints_busy}, connected endpoints not free to accept a request, which saturate a
+ *     non-pipelined pool.</li>
+ *     <li>{@code couchbase_endpoint_in_flight}, requests written and waiting for their response.</li>
+ *     <li>{@code couchbase_endpoint_pending_write_bytes}, bytes queued in the channels, not yet written to the
+ *     socket. They are derived from the writability of the channels, which is safe to read off their event loop.</li>
+ * </ul>
+ */
+public final class EndpointPoolSampler {
+
+    private static final ILog LOGGER = LogManager.getLogger(EndpointPoolSampler.class);
+
+    private static final EndpointState[] STATES = EndpointState.values();
+
+    private static final ConcurrentMap<Long, Pool> POOLS = new ConcurrentHashMap<>();
+
+    /**
+     * Only read and written by the sampler thread.
+     */
+    private static final Map<String, NodeGauges> GAUGES = new HashMap<>();
+
+    private static final Runnable SAMPLE = new RunnableWithExceptionProtection(
+        EndpointPoolSampler::sample, t -> LOGGER.error(t, "Failed to sample couchbase endpoint pools."));
+
+    private static final ScheduledExecutorService SAMPLER =
+        Executors.newSingleThreadScheduledExecutor(new DefaultNamedThreadFactory("CouchbasePoolSampler"));
+
+    static {
+        long interval = Math.max(CouchbasePluginConfig.Plugin.Couchbase.POOL_SAMPLE_INTERVAL_MS, 100);
+        SAMPLER.scheduleAtFixedRate(SAMPLE, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    private EndpointPoolSampler() {
+    }
+
+    /**
+     * Starts sampling the endpoints of the core identified by {@code coreId}, once when its context is created.
+     */
+    public static void register(long coreId) {
+        POOLS.computeIfAbsent(coreId, id -> new Pool());
+    }
+
+    /**
+     * Stops sampling the endpoints of the core identified by {@code coreId}, when it is shut down, and samples the
+     * remaining cores right away to retire the gauges of the nodes only it was connected to.
+     */
+    public static void unregister(long coreId) {
+        if (POOLS.remove(coreId) != null) {
+            SAMPLER.execute(SAMPLE);
+        }
+    }
+
+    public static void endpointCreated(long coreId, Endpoint endpoint) {
+        Pool pool = POOLS.computeIfAbsent(coreId, id -> new Pool());
+        pool.endpoints.add(endpoint);
+        pool.populated = true;
+    }
+
+    private static void sample() {
+        Map<String, Sample> samples = new HashMap<>();
+        for (Iterator<Map.Entry<Long, Pool>> pools = POOLS.entrySet().iterator(); pools.hasNext(); ) {
+            Pool pool = pools.next().getValue();
+            for (Iterator<Endpoint> endpoints = pool.endpoints.iterator(); endpoints.hasNext(); ) {
+                Endpoint endpoint = endpoints.next();
+                EndpointState state = endpoint.state();
+                if (state == EndpointState.DISCONNECTED && endpoint.receivedDisconnectSignal()) {
+                    endpoints.remove();
+                    continue;
+                }
+                String node = endpoint.remoteHostname() + ":" + endpoint.remotePort();
+                String service = endpoint.context().serviceType().id();
+                Sample sample = samples.computeIfAbsent(node + "/" + service, key -> new Sample(node, service));
+                sample.endpoints[state.ordinal()]++;
+                if (state == EndpointState.CONNECTED && !endpoint.freeToWrite()) {
+                    sample.busy++;
+                }
+                sample.inFlight += endpoint.outstandingRequests();
+                sample.pendingWriteBytes += pendingWriteBytes(endpoint);
+            }
+            // a core is shut down once all its endpoints are disconnected for good
+            if (pool.populated && pool.endpoints.isEmpty()) {
+                pools.remove();
+            }
+        }
+        for (Map.Entry<String, Sample> sample : samples.entrySet()) {
+            NodeGauges nodeGauges = GAUGES.computeIfAbsent(sample.getKey(), key -> new NodeGauges(sample.getValue()));
+            if (nodeGauges.current == null) {
+                nodeGauges.reinstate();
+            }
+            nodeGauges.current = sample.getValue();
+        }
+        for (Map.Entry<String, NodeGauges> gauges : GAUGES.entrySet()) {
+            NodeGauges nodeGauges = gauges.getValue();
+            if (nodeGauges.current != null && !samples.containsKey(gauges.getKey())) {
+                nodeGauges.retire();
+            }
+        }
+    }
+
+    // The outbound buffer itself may only be used on the event loop, its writability is published for other threads
+    private static long pendingWriteBytes(Endpoint endpoint) {
+        if (!(endpoint instanceof EnhancedInstance)) {
+            return 0;
+        }
+        Object field = ((EnhancedInstance) endpoint).getSkyWalkingDynamicField();
+        if (!(field instanceof Channel)) {
+            return 0;
+        }
+        Channel channel = (Channel) field;
+        ChannelConfig config = channel.config();
+        long pending = channel.isWritable()
+            ? config.getWriteBufferHighWaterMark() - channel.bytesBeforeUnwritable()
+            : config.getWriteBufferLowWaterMark() + channel.bytesBeforeWritable();
+        return Math.max(pending, 0);
+    }
+
+    private static class Pool {
+        private final Set<Endpoint> endpoints = ConcurrentHashMap.newKeySet();
+        private volatile boolean populated;
+    }
+
+    private static class Sample {
+        private final String node;
+        private final String service;
+        private final long[] endpoints = new long[STATES.length];
+        private long busy;
+        private long inFlight;
+        private long pendingWriteBytes;
+
+        private Sample(String node, String service) {
+            this.node = node;
+            this.service = service;
+        }
+    }
+
+    /**
+     * Gauges of one node and service, reading the latest sample. Gauges are registered once, when the node and service
+     * are first sampled, retired when they are no longer sampled and reinstated if they are sampled again.
+     */
+    private static class NodeGauges {
+        private final List<RetirableGauge> gauges = new ArrayList<>();
+        private final Sample empty;
+        /**
+         * The latest sample, null while the gauges are retired.
+         */
+        private volatile Sample current;
+
+        private NodeGauges(Sample first) {
+            this.empty = new Sample(first.node, first.service);
+            this.current = first;
+            for (EndpointState state : STATES) {
+                int index = state.ordinal();
+                add(new RetirableGauge.Builder("couchbase_endpoints", () -> (double) sample().endpoints[index])
+                    .tag("node", first.node)
+                    .tag("service", first.service)
+                    .tag("state", state.name().toLowerCase())
+                    .build());
+            }
+            add(new RetirableGauge.Builder("couchbase_endpoints_busy", () -> (double) sample().busy)
+                .tag("node", first.node)
+                .tag("service", first.service)
+                .build());
+            add(new RetirableGauge.Builder("couchbase_endpoint_in_flight", () -> (double) sample().inFlight)
+                .tag("node", first.node)
+                .tag("service", first.service)
+                .build());
+            add(new RetirableGauge.Builder("couchbase_endpoint_pending_write_bytes", () -> (double) sample().pendingWriteBytes)
+                .tag("node", first.node)
+                .tag("service", first.service)
+                .build());
+        }
+
+        private void add(Gauge gauge) {
+            // the meter service returns the gauge registered first under the same id, reinstated with the others
+            if (gauge instanceof RetirableGauge) {
+                gauges.add((RetirableGauge) gauge);
+            }
+        }
+
+        private Sample sample() {
+            Sample sample = current;
+            return sample != null ? sample : empty;
+        }
+
+        private void retire() {
+            current = null;
+            for (RetirableGauge gauge : gauges) {
+                gauge.retire();
+            }
+        }
+
+        private void reinstate() {
+            for (RetirableGauge gauge : gauges) {
+                gauge.reinstate();
+            }
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.skywalking.apm.plugin.couchbase.v76.support;
+
+import com.couchbase.client.core.error.AmbiguousTimeoutException;
+import com.couchbase.client.core.error.AuthenticationFailureException;
+import com.couchbase.client.core.error.CasMismatchException;
+import com.couchbase.client.core.error.CouchbaseException;
+import com.couchbase.client.core.error.DocumentExistsException;
+import com.couchbase.client.core.error.DocumentLockedException;
+import com.couchbase.client.core.error.DocumentNotFoundException;
+import com.couchbase.client.core.error.DurabilityAmbiguousException;
+import com.couchbase.client.core.error.DurabilityImpossibleException;
+import com.couchbase.client.core.error.DurabilityLevelNotAvailableException;
+import com.couchbase.client.core.error.IndexNotFoundException;
+import com.couchbase.client.core.error.ParsingFailureException;
+import com.couchbase.client.core.error.PlanningFailureException;
+import com.couchbase.client.core.error.PreparedStatementFailureException;
+import com.couchbase.client.core.error.QuotaLimitedException;
+import com.couchbase.client.core.error.RateLimitedException;
+import com.couchbase.client.core.error.RequestCanceledException;
+import com.couchbase.client.core.error.ServiceNotAvailableException;
+import com.couchbase.client.core.error.TemporaryFailureException;
+import com.couchbase.client.core.error.TimeoutException;
+import com.couchbase.client.core.error.UnambiguousTimeoutException;
+
+/**
+ * Stable categories of the failures of couchbase operations, tagged as {@code db.error.category} and counted by
+ * {@link ErrorMeters}. A failure is classified by its type only, the category of each exception class being resolved
+ * once against the SDK exception hierarchy and cached, so classifying does not look at, nor allocate for, the message.
+ */
+public enum ErrorCategory {
+    TIMEOUT_AMBIGUOUS("timeout_ambiguous", AmbiguousTimeoutException.class),
+    TIMEOUT_UNAMBIGUOUS("timeout_unambiguous", UnambiguousTimeoutException.class),
+    TIMEOUT("timeout", TimeoutException.class, java.util.concurrent.TimeoutException.class),
+    DOCUMENT_NOT_FOUND("document_not_found", DocumentNotFoundException.class),
+    DOCUMENT_EXISTS("document_exists", DocumentExistsException.class),
+    DOCUMENT_LOCKED("document_locked", DocumentLockedException.class),
+    CAS_MISMATCH("cas_mismatch", CasMismatchException.class),
+    TEMPORARY_FAILURE("temporary_failure", TemporaryFailureException.class),
+    RATE_LIMITED("rate_limited", RateLimitedException.class, QuotaLimitedException.class),
+    DURABILITY("durability", DurabilityAmbiguousException.class, DurabilityImpossibleException.class,
+        DurabilityLevelNotAvailableException.class),
+    REQUEST_CANCELED("request_canceled", RequestCanceledException.class),
+    AUTHENTICATION("authentication", AuthenticationFailureException.class),
+    SERVICE_NOT_AVAILABLE("service_not_available", ServiceNotAvailableException.class),
+    QUERY("query", ParsingFailureException.class, PlanningFailureException.class, IndexNotFoundException.class,
+        PreparedStatementFailureException.class),
+    COUCHBASE("couchbase", CouchbaseException.class),
+    OTHER("other");
+
+    private static final ErrorCategory[] CATEGORIES = values();
+
+    private static final ClassValue<ErrorCategory> BY_TYPE = new ClassValue<ErrorCategory>() {
+        @Override
+        protected ErrorCategory computeValue(Class<?> type) {
+            // Categories are declared from the most to the least specific
+            for (ErrorCategory category : CATEGORIES) {
+                for (Class<?> categoryType : category.types) {
+                    if (categoryType.isAssignableFrom(type)) {
+                        return category;
+                    }
+                }
+            }
+            return OTHER;
+        }
+    };
+
+    private final String name;
+    private final Class<?>[] types;
+
+    ErrorCategory(String name, Class<?>... types) {
+        this.name = name;
+        this.types = types;
+    }
+
+    public static ErrorCategory of(Throwable t) {
+        return t == null ? OTHER : BY_TYPE.get(t.getClass());
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isTimeout() {
+        return this == TIMEOUT_AMBIGUOUS || this == TIMEOUT_UNAMBIGUOUS || this == TIMEOUT;
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.skywalking.apm.plugin.couchbase.v76.support;
+
+import org.apache.skywalking.apm.agent.core.meter.Counter;
+import org.apache.skywalking.apm.agent.core.meter.CounterMode;
+import org.apache.skywalking.apm.agent.core.meter.MeterFactory;
+import org.apache.skywalking.apm.plugin.couchbase.v76.CouchbasePluginConfig;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Cluster wide failures of couchbase operations, {@code couchbase_errors} tagged with their {@code category}, reported
+ * as a rate.
+ */
+public final class ErrorMeters {
+
+    private static final AtomicReferenceArray<Counter> ERRORS = new AtomicReferenceArray<>(ErrorCategory.values().length);
+
+    private ErrorMeters() {
+    }
+
+    public static void record(ErrorCategory category) {
+        if (CouchbasePluginConfig.Plugin.Couchbase.OPERATION_METRICS) {
+            errors(category).increment(1);
+        }
+    }
+
+    private static Counter errors(ErrorCategory category) {
+        Counter counter = ERRORS.get(category.ordinal());
+        if (counter == null) {
+            // Built once per category, the meter service ignores a second meter with the same id
+            synchronized (ERRORS) {
+                counter = ERRORS.get(category.ordinal());
+                if (counter == null) {
+                    counter = MeterFactory.counter("couchbase_errors")
+                                          .tag("category", category.getName())
+                                          .mode(CounterMode.RATE)
+                                          .build();
+                    ERRORS.set(category.ordinal(), counter);
+                }
+            }
+        }
+        return counter;
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.skywalking.apm.plugin.couchbase.v76.support;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Heavy hitters among the document keys of one collection over one report interval, in a fixed memory budget. A
+ * Count-Min sketch of {@value #DEPTH} rows of {@code width} counters estimates the count of any key, never under it,
+ * and the {@code capacity} keys with the highest estimates are kept as candidates, Space-Saving style: a key hotter
+ * than the coldest candidate evicts it.
+ * <p>
+ * The rows are indexed by double hashing of the 64-bit {@link Fingerprint} of the key, so that keys sharing their
+ * {@link String#hashCode()} do not collide in every row. The sketch is updated with lock-free increments. The
+ * candidates are only looked at when the key is estimated hotter than the coldest of them, and under a lock that is not
+ * waited for: a contended update skips them, a hot key comes again soon enough to make it in.
+ */
+final class HotKeySketch {
+
+    private static final int DEPTH = 4;
+
+    private final int width;
+    private final int mask;
+    private final AtomicLongArray counters;
+    private final LongAdder total = new LongAdder();
+    private final long startNanos = System.nanoTime();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final String[] keys;
+    private final long[] counts;
+    private int size;
+    private volatile long threshold;
+
+    /**
+     * @param width    counters per row, rounded up to a power of two
+     * @param capacity number of candidate keys kept
+     */
+    HotKeySketch(int width, int capacity) {
+        this.width = Integer.highestOneBit(Math.max(width, 16) * 2 - 1);
+        this.mask = this.width - 1;
+        this.counters = new AtomicLongArray(DEPTH * this.width);
+        this.keys = new String[Math.max(capacity, 1)];
+        this.counts = new long[keys.length];
+    }
+
+    void add(String key, long weight) {
+        total.add(weight);
+        long hash = Fingerprint.hash(key);
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            estimate = Math.min(estimate, counters.addAndGet(index(hash, row), weight));
+        }
+        if (estimate > threshold && lock.tryLock()) {
+            try {
+                offer(key, estimate);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private int index(long hash, int row) {
+        int h = (int) hash + row * (int) (hash >>> 32);
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        return row * width + (h & mask);
+    }
+
+    private long estimate(String key) {
+        long hash = Fingerprint.hash(key);
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            estimate = Math.min(estimate, counters.get(index(hash, row)));
+        }
+        return estimate;
+    }
+
+    private void offer(String key, long estimate) {
+        int coldest = 0;
+        for (int i = 0; i < size; i++) {
+            if (keys[i].equals(key)) {
+                counts[i] = estimate;
+                updateThreshold();
+                return;
+            }
+            if (counts[i] < counts[coldest]) {
+                coldest = i;
+            }
+        }
+        if (size < keys.length) {
+            keys[size] = key;
+            counts[size++] = estimate;
+        } else {
+            keys[coldest] = key;
+            counts[coldest] = estimate;
+        }
+        updateThreshold();
+    }
+
+    private void updateThreshold() {
+        if (size < keys.length) {
+            return;
+        }
+        long coldest = Long.MAX_VALUE;
+        for (long count : counts) {
+            coldest = Math.min(coldest, count);
+        }
+        threshold = coldest;
+    }
+
+    /**
+     * @return the sum of the weights added to the sketch
+     */
+    long total() {
+        return total.sum();
+    }
+
+    long startNanos() {
+        return startNanos;
+    }
+
+    /**
+     * @return the candidate keys with their estimated counts, hottest first
+     */
+    List<HotKey> top() {
+        List<HotKey> top = new ArrayList<>(keys.length);
+        lock.lock();
+        try {
+            for (int i = 0; i < size; i++) {
+                top.add(new HotKey(keys[i], estimate(keys[i])));
+            }
+        } finally {
+            lock.unlock();
+        }
+        top.sort((a, b) -> Long.compare(b.count, a.count));
+        return top;
+    }
+
+    static final class HotKey {
+        final String key;
+        final long count;
+
+        HotKey(String key, long count) {
+            this.key = key;
+            this.count = count;
+        }
+    }
+}
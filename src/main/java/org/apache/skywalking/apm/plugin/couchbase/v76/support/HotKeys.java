@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.skywalking.apm.plugin.couchbase.v76.support;
+
+import com.couchbase.client.java.AsyncCollection;
+import com.couchbase.client.java.Collection;
+import com.couchbase.client.java.ReactiveCollection;
+import org.apache.skywalking.apm.agent.core.boot.DefaultNamedThreadFactory;
+import org.apache.skywalking.apm.agent.core.logging.api.ILog;
+import org.apache.skywalking.apm.agent.core.logging.api.LogManager;
+import org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance.EnhancedInstance;
+import org.apache.skywalking.apm.plugin.couchbase.v76.CouchbasePluginConfig;
+import org.apache.skywalking.apm.util.RunnableWithExceptionProtection;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hot document keys of one collection, shared by the {@code Collection}, {@code AsyncCollection} and
+ * {@code ReactiveCollection} instances of the same bucket, scope and collection. Keys are counted in a
+ * {@link HotKeySketch}, formatted as configured by {@code plugin.couchbase.document_id_mode}, so that {@code PATTERN}
+ * reports hot key patterns and {@code OFF} disables the detection. One call out of
+ * {@code plugin.couchbase.hot_key_sample_rate} is counted, with a weight of the rate.
+ * <p>
+ * Every {@code plugin.couchbase.hot_key_report_interval_ms} the sketch of each collection is swapped for an empty one,
+ * and the top keys of the past interval with their estimated counts and ops/sec are written to the agent log.
+ */
+public final class HotKeys {
+
+    private static final ILog LOGGER = LogManager.getLogger(HotKeys.class);
+
+    private static final ConcurrentMap<String, HotKeys> COLLECTIONS = new ConcurrentHashMap<>();
+
+    private final String keyspace;
+    private volatile HotKeySketch sketch = newSketch();
+
+    private HotKeys(String keyspace) {
+        this.keyspace = keyspace;
+    }
+
+    /**
+     * Count the document key of a key-value call, the first of its arguments.
+     */
+    public static void record(EnhancedInstance objInst, Object[] allArguments) {
+        if (!CouchbasePluginConfig.Plugin.Couchbase.HOT_KEYS || allArguments.length == 0) {
+            return;
+        }
+        int sampleRate = CouchbasePluginConfig.Plugin.Couchbase.HOT_KEY_SAMPLE_RATE;
+        if (sampleRate > 1 && ThreadLocalRandom.current().nextInt(sampleRate) != 0) {
+            return;
+        }
+        HotKeys hotKeys = CouchbaseInstanceState.hotKeysOf(objInst);
+        String key = DocumentIdFormatter.format(allArguments[0]);
+        if (hotKeys != null && key != null) {
+            hotKeys.sketch.add(key, Math.max(sampleRate, 1));
+        }
+    }
+
+    /**
+     * @return the hot keys of the collection of the instance, null if it is not a collection
+     */
+    static HotKeys of(Object instance) {
+        String keyspace;
+        if (instance instanceof Collection) {
+            Collection collection = (Collection) instance;
+            keyspace = collection.bucketName() + "." + collection.scopeName() + "." + collection.name();
+        } else if (instance instanceof AsyncCollection) {
+            AsyncCollection collection = (AsyncCollection) instance;
+            keyspace = collection.bucketName() + "." + collection.scopeName() + "." + collection.name();
+        } else if (instance instanceof ReactiveCollection) {
+            ReactiveCollection collection = (ReactiveCollection) instance;
+            keyspace = collection.bucketName() + "." + collection.scopeName() + "." + collection.name();
+        } else {
+            return null;
+        }
+        Reporter.start();
+        return COLLECTIONS.computeIfAbsent(keyspace, HotKeys::new);
+    }
+
+    private static HotKeySketch newSketch() {
+        return new HotKeySketch(CouchbasePluginConfig.Plugin.Couchbase.HOT_KEY_SKETCH_WIDTH,
+                                CouchbasePluginConfig.Plugin.Couchbase.HOT_KEY_TOP_K);
+    }
+
+    private static void report() {
+        for (HotKeys hotKeys : COLLECTIONS.values()) {
+            HotKeySketch past = hotKeys.sketch;
+            hotKeys.sketch = newSketch();
+            long total = past.total();
+            if (total == 0) {
+                continue;
+            }
+            double seconds = (System.nanoTime() - past.startNanos()) / (double) TimeUnit.SECONDS.toNanos(1);
+            List<HotKeySketch.HotKey> top = past.top();
+            StringBuilder keys = new StringBuilder();
+            for (HotKeySketch.HotKey hotKey : top) {
+                keys.append(keys.length() == 0 ? "" : ", ")
+                    .append(hotKey.key)
+                    .append(" ~")
+                    .append(hotKey.count)
+                    .append(" (")
+                    .append(String.format("%.1f", hotKey.count / seconds))
+                    .append(" ops/s, ")
+                    .append(hotKey.count * 100 / total)
+                    .append("%)");
+            }
+            LOGGER.info("Hot keys of {} over the last {}s, {} calls: {}",
+                        hotKeys.keyspace, Math.round(seconds), total, keys);
+        }
+    }
+
+    /**
+     * Reports the hot keys every interval. Started when the first collection records a key, so that applications
+     * without hot key detection get no thread.
+     */
+    private static final class Reporter {
+        static {
+            long interval = Math.max(CouchbasePluginConfig.Plugin.Couchbase.HOT_KEY_REPORT_INTERVAL_MS, 1000);
+            Executors.newSingleThreadScheduledExecutor(new DefaultNamedThreadFactory("CouchbaseHotKeyReport"))
+                     .scheduleAtFixedRate(
+                         new RunnableWithExceptionProtection(
+                             HotKeys::report, t -> LOGGER.error(t, "Failed to report couchbase hot keys.")),
+                         interval, interval, TimeUnit.MILLISECONDS
+                     );
+        }
+
+        private static void start() {
+            // initializing the class schedules the report
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.skywalking.apm.plugin.couchbase.v76.support;
+
+import org.apache.skywalking.apm.agent.core.context.ContextManager;
+import org.apache.skywalking.apm.agent.core.context.trace.AbstractSpan;
+
+import java.util.Arrays;
+
+/**
+ * Per-thread stack of the couchbase calls currently being intercepted. Overloads delegate to each other (e.g.
+ * {@code get(String)} to {@code get(String, GetOptions)}), so only the outermost call of a thread is traced; the frame
+ * remembers whether it created a span so that {@code afterMethod} and {@code handleMethodException} know what to close
+ * without looking at, or allocating for, the active span.
+ * <p>
+ * The agent calls {@code afterMethod} even when {@code beforeMethod} failed, and swallows what they throw. A frame is
+ * therefore entered first thing in {@code beforeMethod}, and marked traced once its span exists, and it is left in
+ * {@code afterMethod} before, or in a {@code finally} block around, anything else: a frame left behind would make
+ * every later call of the thread look nested, and untraced.
+ */
+public final class InvocationFrames {
+
+    private static final ThreadLocal<InvocationFrames> FRAMES = ThreadLocal.withInitial(InvocationFrames::new);
+
+    private boolean[] traced = new boolean[8];
+    private Object[] attachments = new Object[8];
+    private long[] startNanos = new long[8];
+    private boolean[] failed = new boolean[8];
+    private int depth;
+
+    private InvocationFrames() {
+    }
+
+    public static InvocationFrames current() {
+        return FRAMES.get();
+    }
+
+    /**
+     * @return true if another intercepted couchbase call of this thread is in progress
+     */
+    public boolean isNested() {
+        return depth > 0;
+    }
+
+    /**
+     * @return true if the innermost frame is the outermost intercepted call of this thread
+     */
+    public boolean isOutermost() {
+        return depth == 1;
+    }
+
+    public void enter(boolean tracedFrame) {
+        if (depth == traced.length) {
+            traced = Arrays.copyOf(traced, depth * 2);
+            attachments = Arrays.copyOf(attachments, depth * 2);
+            startNanos = Arrays.copyOf(startNanos, depth * 2);
+            failed = Arrays.copyOf(failed, depth * 2);
+        }
+        startNanos[depth] = System.nanoTime();
+        failed[depth] = false;
+        traced[depth++] = tracedFrame;
+    }
+
+    /**
+     * Mark the innermost frame as having created a span, to be stopped when the frame is left.
+     */
+    public void markTraced() {
+        if (depth > 0) {
+            traced[depth - 1] = true;
+        }
+    }
+
+    /**
+     * Attach per call state to the innermost frame, it is released when the frame is left.
+     */
+    public void attach(Object attachment) {
+        if (depth > 0) {
+            attachments[depth - 1] = attachment;
+        }
+    }
+
+    public Object getAttachment() {
+        return depth > 0 ? attachments[depth - 1] : null;
+    }
+
+    /**
+     * @return the {@link System#nanoTime()} at which the innermost frame was entered
+     */
+    public long getStartNanos() {
+        return depth > 0 ? startNanos[depth - 1] : System.nanoTime();
+    }
+
+    /**
+     * Mark the call of the innermost frame as failed with an exception.
+     */
+    public void markFailed() {
+        if (depth > 0) {
+            failed[depth - 1] = true;
+        }
+    }
+
+    public boolean isFailed() {
+        return depth > 0 && failed[depth - 1];
+    }
+
+    /**
+     * @return whether the frame being left created a span
+     */
+    public boolean exit() {
+        if (depth == 0) {
+            return false;
+        }
+        attachments[--depth] = null;
+        return traced[depth];
+    }
+
+    /**
+     * @return whether the innermost frame created a span
+     */
+    public boolean isTraced() {
+        return depth > 0 && traced[depth - 1];
+    }
+
+    /**
+     * @return the span of the couchbase operation this thread is executing, either created by a frame or attached to
+     * it, or null if the operation is not traced
+     */
+    public AbstractSpan getOperationSpan() {
+        for (int i = depth - 1; i >= 0; i--) {
+            if (attachments[i] instanceof AbstractSpan) {
+                return (AbstractSpan) attachments[i];
+            }
+            if (traced[i]) {
+                return ContextManager.activeSpan();
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.skywalking.apm.plugin.couchbase.v76.support;
+
+import com.couchbase.client.core.util.HostAndPort;
+import org.apache.skywalking.apm.agent.core.meter.Histogram;
+import org.apache.skywalking.apm.agent.core.meter.MeterFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per node request latency, exported as the {@code couchbase_node_latency} histogram (microseconds) tagged with the
+ * node. The node label and histogram are created once per node; recording a request is a map lookup and a bucket
+ * increment.
+ * <p>
+ * The latency histograms of the plugin share {@link #LATENCY_STEPS_US}: 0, then four log-linear steps per power of two
+ * from 16 us to 16.8 s, the layout of {@link LatencyDistribution}, so that sub-millisecond key-value latencies are
+ * bucketed within 25%.
+ */
+public final class NodeLatencyMeters {
+
+    private static final long FIRST_STEP_US = 16;
+    private static final long LAST_STEP_US = 1L << 24;
+    private static final int FIRST_STEP_BUCKET = LatencyDistribution.bucketOf(FIRST_STEP_US);
+    private static final int LAST_STEP_BUCKET = LatencyDistribution.bucketOf(LAST_STEP_US);
+
+    public static final List<Double> LATENCY_STEPS_US = latencySteps();
+
+    private static final ConcurrentMap<HostAndPort, Node> NODES = new ConcurrentHashMap<>();
+
+    private static final int CACHED_VBUCKET_LABELS = 1024;
+    private static final String[] VBUCKET_LABELS = new String[CACHED_VBUCKET_LABELS];
+
+    static {
+        for (int i = 0; i < CACHED_VBUCKET_LABELS; i++) {
+            VBUCKET_LABELS[i] = Integer.toString(i);
+        }
+    }
+
+    private NodeLatencyMeters() {
+    }
+
+    /**
+     * @return the node label, {@code host:port}
+     */
+    public static String record(HostAndPort address, long latencyNanos) {
+        Node node = NODES.get(address);
+        if (node == null) {
+            node = NODES.computeIfAbsent(address, Node::new);
+        }
+        node.latency.addValue(latencyNanos / (double) TimeUnit.MICROSECONDS.toNanos(1));
+        return node.label;
+    }
+
+    /**
+     * @return the index in {@link #LATENCY_STEPS_US} of the bucket of the latency, without searching the steps
+     */
+    static int stepIndex(long latencyNanos) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(latencyNanos);
+        if (micros < FIRST_STEP_US) {
+            return 0;
+        }
+        return Math.min(LatencyDistribution.bucketOf(micros), LAST_STEP_BUCKET) - FIRST_STEP_BUCKET + 1;
+    }
+
+    private static List<Double> latencySteps() {
+        List<Double> steps = new ArrayList<>(LAST_STEP_BUCKET - FIRST_STEP_BUCKET + 2);
+        steps.add(0d);
+        for (int bucket = FIRST_STEP_BUCKET; bucket <= LAST_STEP_BUCKET; bucket++) {
+            steps.add((double) LatencyDistribution.lowerBound(bucket));
+        }
+        return Collections.unmodifiableList(steps);
+    }
+
+    public static String vbucketLabel(int partition) {
+        return partition >= 0 && partition < CACHED_VBUCKET_LABELS ? VBUCKET_LABELS[partition] : Integer.toString(partition);
+    }
+
+    private static class Node {
+        private final String label;
+        private final Histogram latency;
+
+        private Node(HostAndPort address) {
+            this.label = address.host() + ":" + address.port();
+            this.latency = MeterFactory.histogram("couchbase_node_latency")
+                                       .tag("node", label)
+                                       .steps(LATENCY_STEPS_US)
+                                       .build();
+        }
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.skywalking.apm.plugin.couchbase.v76.support;
+
+import org.apache.skywalking.apm.agent.core.context.trace.AbstractSpan;
+import org.apache.skywalking.apm.plugin.couchbase.v76.CouchbasePluginConfig;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Everything about an intercepted method that does not depend on its arguments: the operation, the span operation
+ * name and the static tags. Descriptors are resolved once per {@link Method} and shared afterwards, so the steady
+ * state interceptor path does not call {@link Method#getName()} or concatenate the span name again.
+ */
+public class OperationDescriptor {
+
+    private final String operation;
+    private final String operationName;
+    private final int spansPerSecond;
+    private final long deferredThresholdNanos;
+
+    private OperationDescriptor(String operationNamePrefix, String operation) {
+        this.operation = operation;
+        this.operationName = operationNamePrefix + operation;
+        this.spansPerSecond = spansPerSecond(operation);
+        this.deferredThresholdNanos = deferredThresholdNanos(operation);
+    }
+
+    private static int spansPerSecond(String operation) {
+        switch (operation) {
+            case "get":
+                return CouchbasePluginConfig.Plugin.Couchbase.SAMPLE_RATE_LIMIT_GET;
+            case "upsert":
+                return CouchbasePluginConfig.Plugin.Couchbase.SAMPLE_RATE_LIMIT_UPSERT;
+            case "insert":
+                return CouchbasePluginConfig.Plugin.Couchbase.SAMPLE_RATE_LIMIT_INSERT;
+            case "replace":
+                return CouchbasePluginConfig.Plugin.Couchbase.SAMPLE_RATE_LIMIT_REPLACE;
+            case "remove":
+                return CouchbasePluginConfig.Plugin.Couchbase.SAMPLE_RATE_LIMIT_REMOVE;
+            case "query":
+                return CouchbasePluginConfig.Plugin.Couchbase.SAMPLE_RATE_LIMIT_QUERY;
+            default:
+                return -1;
+        }
+    }
+
+    private static long deferredThresholdNanos(String operation) {
+        if (!CouchbasePluginConfig.Plugin.Couchbase.DEFERRED_SPANS) {
+            return -1;
+        }
+        long thresholdMs;
+        switch (operation) {
+            case "get":
+                thresholdMs = CouchbasePluginConfig.Plugin.Couchbase.DEFERRED_SPAN_THRESHOLD_MS_GET;
+                break;
+            case "upsert":
+                thresholdMs = CouchbasePluginConfig.Plugin.Couchbase.DEFERRED_SPAN_THRESHOLD_MS_UPSERT;
+                break;
+            case "insert":
+                thresholdMs = CouchbasePluginConfig.Plugin.Couchbase.DEFERRED_SPAN_THRESHOLD_MS_INSERT;
+                break;
+            case "replace":
+                thresholdMs = CouchbasePluginConfig.Plugin.Couchbase.DEFERRED_SPAN_THRESHOLD_MS_REPLACE;
+                break;
+            case "remove":
+                thresholdMs = CouchbasePluginConfig.Plugin.Couchbase.DEFERRED_SPAN_THRESHOLD_MS_REMOVE;
+                break;
+            default:
+                thresholdMs = -1;
+        }
+        if (thresholdMs < 0) {
+            thresholdMs = CouchbasePluginConfig.Plugin.Couchbase.DEFERRED_SPAN_THRESHOLD_MS;
+        }
+        return TimeUnit.MILLISECONDS.toNanos(Math.max(thresholdMs, 0));
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    public String getOperationName() {
+        return operationName;
+    }
+
+    /**
+     * @return the maximum number of spans per second and instance for this operation, negative if unlimited
+     */
+    public int getSpansPerSecond() {
+        return spansPerSecond;
+    }
+
+    /**
+     * @return true if the span of a blocking call of this operation is only created once the call turned out slow or
+     * failed
+     */
+    public boolean isDeferred() {
+        return deferredThresholdNanos >= 0;
+    }
+
+    /**
+     * @return the duration from which a deferred call is traced
+     */
+    public long getDeferredThresholdNanos() {
+        return deferredThresholdNanos;
+    }
+
+    public void tagStatic(AbstractSpan span) {
+        span.tag(CouchbaseTags.DB_OPERATION, operation);
+    }
+
+    /**
+     * Descriptors of the methods intercepted by one interceptor, all sharing the same operation name prefix.
+     */
+    public static class Registry {
+        private final String operationNamePrefix;
+        private final ConcurrentMap<Method, OperationDescriptor> descriptors = new ConcurrentHashMap<>();
+
+        public Registry(String operationNamePrefix) {
+            this.operationNamePrefix = operationNamePrefix;
+        }
+
+        public String getOperationNamePrefix() {
+            return operationNamePrefix;
+        }
+
+        public OperationDescriptor of(Method method) {
+            OperationDescriptor descriptor = descriptors.get(method);
+            if (descriptor == null) {
+                descriptor = new OperationDescriptor(operationNamePrefix, method.getName());
+                OperationDescriptor previous = descriptors.putIfAbsent(method, descriptor);
+                if (previous != null) {
+                    descriptor = previous;
+                }
+            }
+            return descriptor;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.skywalking.apm.plugin.couchbase.v76.support;
+
+import org.apache.skywalking.apm.agent.core.meter.Counter;
+import org.apache.skywalking.apm.agent.core.meter.CounterMode;
+import org.apache.skywalking.apm.agent.core.meter.MeterFactory;
+import org.apache.skywalking.apm.agent.core.meter.MeterTag;
+
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency distribution, call and error counts of one operation, recorded for every call whether it is traced or
+ * not. Recording is a bucket index computation and a couple of {@link LongAdder} increments, striped across cells so concurrent
+ * callers do not contend. The meters reported to the OAP are only touched by {@link CouchbaseMeters}' flush, which
+ * exports the counts accumulated since the previous flush.
+ */
+public class OperationMetrics {
+
+    private static final int STEPS = NodeLatencyMeters.LATENCY_STEPS_US.size();
+
+    private final String namePrefix;
+    private final List<MeterTag> tags;
+
+    private final LongAdder[] buckets = new LongAdder[STEPS];
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    // Only accessed by the flushing thread
+    private final long[] exportedBuckets = new long[STEPS];
+    private long exportedCalls;
+    private long exportedErrors;
+    private BulkHistogram latencyMeter;
+    private Counter callsMeter;
+    private Counter errorsMeter;
+
+    /**
+     * @param namePrefix prefix of the meter names, {@code _latency}, {@code _calls} and {@code _errors} are appended
+     */
+    OperationMetrics(String namePrefix, List<MeterTag> tags) {
+        this.namePrefix = namePrefix;
+        this.tags = tags;
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public void record(long latencyNanos, boolean error) {
+        buckets[NodeLatencyMeters.stepIndex(latencyNanos)].increment();
+        calls.increment();
+        if (error) {
+            errors.increment();
+        }
+    }
+
+    long getCalls() {
+        return calls.sum();
+    }
+
+    long getErrors() {
+        return errors.sum();
+    }
+
+    /**
+     * @return the calls recorded into the bucket of {@link NodeLatencyMeters#LATENCY_STEPS_US} at {@code step}
+     */
+    long getBucketCount(int step) {
+        return buckets[step].sum();
+    }
+
+    /**
+     * Export the counts recorded since the previous flush. The adders are never reset, so increments racing with the
+     * flush are exported by the next one instead of being lost.
+     */
+    void flush() {
+        if (latencyMeter == null) {
+            BulkHistogram.Builder latency = new BulkHistogram.Builder(namePrefix + "_latency", NodeLatencyMeters.LATENCY_STEPS_US);
+            Counter.Builder calls = MeterFactory.counter(namePrefix + "_calls").mode(CounterMode.INCREMENT);
+            Counter.Builder errors = MeterFactory.counter(namePrefix + "_errors").mode(CounterMode.INCREMENT);
+            for (MeterTag tag : tags) {
+                latency.tag(tag.getKey(), tag.getValue());
+                calls.tag(tag.getKey(), tag.getValue());
+                errors.tag(tag.getKey(), tag.getValue());
+            }
+            latencyMeter = (BulkHistogram) latency.build();
+            callsMeter = calls.build();
+            errorsMeter = errors.build();
+        }
+        for (int i = 0; i < buckets.length; i++) {
+            long total = buckets[i].sum();
+            if (total != exportedBuckets[i]) {
+                latencyMeter.increment(i, total - exportedBuckets[i]);
+                exportedBuckets[i] = total;
+            }
+        }
+        long totalCalls = calls.sum();
+        callsMeter.increment(totalCalls - exportedCalls);
+        exportedCalls = totalCalls;
+        long totalErrors = errors.sum();
+        errorsMeter.increment(totalErrors - exportedErrors);
+        exportedErrors = totalErrors;
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.skywalking.apm.plugin.couchbase.v76.support;
+
+import com.couchbase.client.core.io.CollectionIdentifier;
+import org.apache.skywalking.apm.agent.core.context.trace.AbstractSpan;
+import org.apache.skywalking.apm.agent.core.meter.Counter;
+import org.apache.skywalking.apm.agent.core.meter.CounterMode;
+import org.apache.skywalking.apm.agent.core.meter.Histogram;
+import org.apache.skywalking.apm.agent.core.meter.MeterFactory;
+import org.apache.skywalking.apm.plugin.couchbase.v76.CouchbasePluginConfig;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Per collection payload size meters: {@code couchbase_request_size} and {@code couchbase_response_size} histograms,
+ * in bytes, and {@code couchbase_oversized_documents}, the number of packets whose body reaches
+ * {@code plugin.couchbase.oversized_document_bytes}, tagged with the {@code direction}. All are tagged with
+ * {@code bucket}, {@code scope} and {@code collection}.
+ */
+public final class PayloadSizeMeters {
+
+    public static final List<Double> SIZE_STEPS_BYTES = Arrays.asList(
+        0d, 256d, 1024d, 4096d, 16384d, 65536d, 262144d, 1048576d, 4194304d, 16777216d);
+
+    private static final ConcurrentMap<CollectionIdentifier, CollectionMeters> COLLECTIONS = new ConcurrentHashMap<>();
+
+    private PayloadSizeMeters() {
+    }
+
+    /**
+     * @param span the span of the operation the packet belongs to, or null if not traced
+     */
+    public static void record(CollectionIdentifier collection, int bodySize, boolean isRequest, AbstractSpan span) {
+        boolean oversized = bodySize >= CouchbasePluginConfig.Plugin.Couchbase.OVERSIZED_DOCUMENT_BYTES;
+        if (collection != null) {
+            CollectionMeters meters = COLLECTIONS.get(collection);
+            if (meters == null) {
+                meters = COLLECTIONS.computeIfAbsent(collection, CollectionMeters::new);
+            }
+            (isRequest ? meters.requestSize : meters.responseSize).addValue(bodySize);
+            if (oversized) {
+                (isRequest ? meters.oversizedRequests : meters.oversizedResponses).increment(1);
+            }
+        }
+        if (span != null) {
+            span.tag(isRequest ? CouchbaseTags.REQUEST_BYTES : CouchbaseTags.RESPONSE_BYTES, Integer.toString(bodySize));
+            if (oversized) {
+                span.tag(CouchbaseTags.DB_DOCUMENT_OVERSIZED, "true");
+            }
+        }
+    }
+
+    private static class CollectionMeters {
+        private final Histogram requestSize;
+        private final Histogram responseSize;
+        private final Counter oversizedRequests;
+        private final Counter oversizedResponses;
+
+        private CollectionMeters(CollectionIdentifier collection) {
+            String bucket = collection.bucket();
+            String scope = collection.scope().orElse(CollectionIdentifier.DEFAULT_SCOPE);
+            String name = collection.collection().orElse(CollectionIdentifier.DEFAULT_COLLECTION);
+            this.requestSize = MeterFactory.histogram("couchbase_request_size")
+                                           .tag("bucket", bucket).tag("scope", scope).tag("collection", name)
+                                           .steps(SIZE_STEPS_BYTES)
+                                           .build();
+            this.responseSize = MeterFactory.histogram("couchbase_response_size")
+                                            .tag("bucket", bucket).tag("scope", scope).tag("collection", name)
+                                            .steps(SIZE_STEPS_BYTES)
+                                            .build();
+            this.oversizedRequests = MeterFactory.counter("couchbase_oversized_documents")
+                                                 .tag("bucket", bucket).tag("scope", scope).tag("collection", name)
+                                                 .tag("direction", "request")
+                                                 .mode(CounterMode.INCREMENT)
+                                                 .build();
+            this.oversizedResponses = MeterFactory.counter("couchbase_oversized_documents")
+                                                  .tag("bucket", bucket).tag("scope", scope).tag("collection", name)
+                                                  .tag("direction", "response")
+                                                  .mode(CounterMode.INCREMENT)
+                                                  .build();
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.skywalking.apm.plugin.couchbase.v76.support;
+
+import com.couchbase.client.core.api.query.CoreQueryScanConsistency;
+import com.couchbase.client.java.query.QueryOptions;
+import org.apache.skywalking.apm.agent.core.boot.DefaultNamedThreadFactory;
+import org.apache.skywalking.apm.agent.core.logging.api.ILog;
+import org.apache.skywalking.apm.agent.core.logging.api.LogManager;
+import org.apache.skywalking.apm.plugin.couchbase.v76.CouchbasePluginConfig;
+import org.apache.skywalking.apm.util.RunnableWithExceptionProtection;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts, per statement fingerprint, the N1QL queries run adhoc, which the query service plans again on every
+ * execution, and the queries run with the {@code request_plus} scan consistency, which wait for the indexes to catch
+ * up with every mutation. Every {@code plugin.couchbase.query_advisor_interval_ms} the statements run at least
+ * {@code plugin.couchbase.query_advisor_min_executions} times that way are written to the agent log, as candidates to
+ * run as prepared statements or with a weaker consistency, and the counts start over.
+ * <p>
+ * The table holds at most {@code plugin.couchbase.query_advisor_table_size} statements per interval, further
+ * statements are not counted until the next one. Statements are counted by the fingerprint of their normalized form, or
+ * of their text when {@code plugin.couchbase.normalize_statement} is false, and once the table is full a statement is
+ * only normalized to be counted if its normalized form is already cached. The reporting thread is only started by the
+ * first query counted.
+ */
+public final class QueryAdvisor {
+
+    private static final ILog LOGGER = LogManager.getLogger(QueryAdvisor.class);
+
+    /**
+     * Swapped for an empty table by every report, rather than emptied under the threads counting into it.
+     */
+    private static volatile ConcurrentMap<String, Statement> table = new ConcurrentHashMap<>();
+
+    private static volatile long intervalStartNanos = System.nanoTime();
+
+    private QueryAdvisor() {
+    }
+
+    public static boolean isEnabled() {
+        return CouchbasePluginConfig.Plugin.Couchbase.QUERY_ADVISOR;
+    }
+
+    /**
+     * @param options the options the query is run with, null for the defaults
+     */
+    public static void record(String statement, QueryOptions.Built options) {
+        if (!CouchbasePluginConfig.Plugin.Couchbase.QUERY_ADVISOR) {
+            return;
+        }
+        boolean adhoc = true;
+        boolean requestPlus = false;
+        if (options != null) {
+            adhoc = options.adhoc();
+            requestPlus = options.scanConsistency() == CoreQueryScanConsistency.REQUEST_PLUS;
+        }
+        if (!adhoc && !requestPlus) {
+            return;
+        }
+        Reporter.start();
+        ConcurrentMap<String, Statement> statements = table;
+        boolean full = statements.size() >= CouchbasePluginConfig.Plugin.Couchbase.QUERY_ADVISOR_TABLE_SIZE;
+        StatementNormalizer.NormalizedStatement normalized = countedFormOf(statement, full);
+        if (normalized == null) {
+            return;
+        }
+        Statement counted = statements.get(normalized.getFingerprint());
+        if (counted == null) {
+            if (full) {
+                return;
+            }
+            counted = statements.computeIfAbsent(normalized.getFingerprint(), key -> new Statement(normalized.getStatement()));
+        }
+        if (adhoc) {
+            counted.adhoc.increment();
+        }
+        if (requestPlus) {
+            counted.requestPlus.increment();
+        }
+    }
+
+    // The form a statement is counted by, null when the table is full and normalizing it would likely be wasted
+    private static StatementNormalizer.NormalizedStatement countedFormOf(String statement, boolean full) {
+        if (!CouchbasePluginConfig.Plugin.Couchbase.NORMALIZE_STATEMENT) {
+            return new StatementNormalizer.NormalizedStatement(
+                CouchbaseSpanHelper.truncateStatement(statement), Fingerprint.of(statement));
+        }
+        return full ? StatementNormalizer.cached(statement) : StatementNormalizer.normalize(statement);
+    }
+
+    private static void report() {
+        long now = System.nanoTime();
+        long seconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(now - intervalStartNanos));
+        intervalStartNanos = now;
+        long minExecutions = CouchbasePluginConfig.Plugin.Couchbase.QUERY_ADVISOR_MIN_EXECUTIONS;
+        ConcurrentMap<String, Statement> statements = table;
+        table = new ConcurrentHashMap<>();
+        for (Map.Entry<String, Statement> entry : statements.entrySet()) {
+            Statement statement = entry.getValue();
+            long adhoc = statement.adhoc.sum();
+            long requestPlus = statement.requestPlus.sum();
+            if (adhoc >= minExecutions) {
+                LOGGER.info("Couchbase statement {} ran adhoc {} times in the last {}s, and was planned again each "
+                                + "time. Consider running it as a prepared statement, with QueryOptions#adhoc(false): {}",
+                            entry.getKey(), adhoc, seconds, statement.text);
+            }
+            if (requestPlus >= minExecutions) {
+                LOGGER.info("Couchbase statement {} ran {} times in the last {}s with the request_plus scan "
+                                + "consistency, waiting for the indexes each time. Consider QueryOptions#consistentWith "
+                                + "or not_bounded: {}",
+                            entry.getKey(), requestPlus, seconds, statement.text);
+            }
+        }
+    }
+
+    private static final class Reporter {
+        static {
+            long interval = Math.max(CouchbasePluginConfig.Plugin.Couchbase.QUERY_ADVISOR_INTERVAL_MS, 1000);
+            Executors.newSingleThreadScheduledExecutor(new DefaultNamedThreadFactory("CouchbaseQueryAdvisor"))
+                     .scheduleAtFixedRate(
+                         new RunnableWithExceptionProtection(
+                             QueryAdvisor::report, t -> LOGGER.error(t, "Failed to report couchbase query advice.")),
+                         interval, interval, TimeUnit.MILLISECONDS
+                     );
+        }
+
+        private static void start() {
+            // initializing the class schedules the report
+        }
+    }
+
+    private static final class Statement {
+        private final String text;
+        private final LongAdder adhoc = new LongAdder();
+        private final LongAdder requestPlus = new LongAdder();
+
+        private Statement(String text) {
+            this.text = text;
+        }
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.skywalking.apm.plugin.couchbase.v76.support;
+
+import com.couchbase.client.core.api.search.result.CoreSearchRow;
+import com.couchbase.client.core.msg.analytics.AnalyticsChunkRow;
+import com.couchbase.client.core.msg.query.QueryChunkRow;
+import org.apache.skywalking.apm.agent.core.boot.DefaultNamedThreadFactory;
+import org.apache.skywalking.apm.agent.core.context.trace.AbstractSpan;
+import org.apache.skywalking.apm.agent.core.logging.api.ILog;
+import org.apache.skywalking.apm.agent.core.logging.api.LogManager;
+import org.apache.skywalking.apm.plugin.couchbase.v76.CouchbasePluginConfig;
+import org.apache.skywalking.apm.util.RunnableWithExceptionProtection;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * Rows of a traced reactive query, analytics or search call. Once the query result is emitted, the span of the query is handed over to the row
+ * stream, finished when the rows terminate and tagged with:
+ * <ul>
+ *     <li>{@code db.query.first_row_us}: time from the subscription of the query to its first row.</li>
+ *     <li>{@code db.query.rows} and {@code db.query.bytes}: rows and bytes streamed, the bytes of a search row being
+ *     its stored fields.</li>
+ *     <li>{@code db.query.rows_per_sec}: rows streamed per second since the result was emitted, which is bounded by
+ *     how fast the application consumes them.</li>
+ * </ul>
+ * Rows are signalled serially, so the counters are plain fields.
+ * <p>
+ * An application may never stream the rows, for example when it only reads the metadata of a DML statement, or drops
+ * the result. If the rows are not subscribed, the span is also finished when the metadata terminates. As a last resort,
+ * a result whose rows and metadata are both left unsubscribed for {@code plugin.couchbase.row_stream_timeout_ms} is
+ * finished by a background sweeper and tagged with {@code db.query.abandoned}, so that the segment is still reported.
+ */
+public class QueryRowStream {
+
+    private static final ILog LOGGER = LogManager.getLogger(QueryRowStream.class);
+
+    private static final AtomicIntegerFieldUpdater<QueryRowStream> FINISHED =
+        AtomicIntegerFieldUpdater.newUpdater(QueryRowStream.class, "finished");
+    private static final AtomicIntegerFieldUpdater<QueryRowStream> SUBSCRIBED =
+        AtomicIntegerFieldUpdater.newUpdater(QueryRowStream.class, "subscribed");
+    private static final AtomicIntegerFieldUpdater<QueryRowStream> ROWS_WRAPPED =
+        AtomicIntegerFieldUpdater.newUpdater(QueryRowStream.class, "rowsWrapped");
+
+    private final AbstractSpan span;
+    private final long subscribeNanos;
+    private final long resultNanos;
+    private long firstRowNanos;
+    private long rows;
+    private long bytes;
+    private volatile int rowsWrapped;
+    private volatile int rowsSubscribed;
+    private volatile int subscribed;
+    private volatile int finished;
+
+    QueryRowStream(AbstractSpan span, long subscribeNanos) {
+        this.span = span;
+        this.subscribeNanos = subscribeNanos;
+        this.resultNanos = System.nanoTime();
+        if (CouchbasePluginConfig.Plugin.Couchbase.ROW_STREAM_TIMEOUT_MS > 0) {
+            Sweeper.PENDING.add(this);
+        }
+    }
+
+    /**
+     * Wraps the rows of the result, the span is finished when they terminate. The rows can only be streamed once, a
+     * second call returns them as is.
+     */
+    public <R> Flux<R> wrap(Flux<R> rowFlux) {
+        if (!ROWS_WRAPPED.compareAndSet(this, 0, 1)) {
+            return rowFlux;
+        }
+        return rowFlux.doOnSubscribe(s -> {
+            rowsSubscribed = 1;
+            onSubscribed();
+        }).doOnNext(this::onRow).doOnError(this::onError).doFinally(this::onFinally);
+    }
+
+    /**
+     * Wraps the metadata, or trailer, of the result. Its termination finishes the span unless the rows have been
+     * subscribed, in which case they finish it.
+     */
+    public <R> Mono<R> wrapMetaData(Mono<R> metaData) {
+        return metaData.doOnSubscribe(s -> onSubscribed()).doFinally(signal -> {
+            if (rowsSubscribed == 0) {
+                onFinally(signal);
+            }
+        });
+    }
+
+    private void onSubscribed() {
+        if (SUBSCRIBED.compareAndSet(this, 0, 1)) {
+            Sweeper.PENDING.remove(this);
+        }
+    }
+
+    private void onRow(Object row) {
+        if (rows++ == 0) {
+            firstRowNanos = System.nanoTime();
+        }
+        byte[] data = null;
+        if (row instanceof QueryChunkRow) {
+            data = ((QueryChunkRow) row).data();
+        } else if (row instanceof AnalyticsChunkRow) {
+            data = ((AnalyticsChunkRow) row).data();
+        } else if (row instanceof CoreSearchRow) {
+            data = ((CoreSearchRow) row).fields();
+        }
+        if (data != null) {
+            bytes += data.length;
+        }
+    }
+
+    private void onError(Throwable throwable) {
+        if (finished == 0) {
+            CouchbaseSpanHelper.logError(span, throwable);
+        }
+    }
+
+    private void onFinally(SignalType signal) {
+        if (!FINISHED.compareAndSet(this, 0, 1)) {
+            return;
+        }
+        long endNanos = System.nanoTime();
+        if (rows > 0) {
+            span.tag(CouchbaseTags.QUERY_FIRST_ROW_US, Long.toString(TimeUnit.NANOSECONDS.toMicros(firstRowNanos - subscribeNanos)));
+        }
+        span.tag(CouchbaseTags.QUERY_ROWS, Long.toString(rows));
+        span.tag(CouchbaseTags.QUERY_BYTES, Long.toString(bytes));
+        long streamNanos = endNanos - resultNanos;
+        if (streamNanos > 0) {
+            span.tag(CouchbaseTags.QUERY_ROWS_PER_SEC, Long.toString(rows * TimeUnit.SECONDS.toNanos(1) / streamNanos));
+        }
+        if (signal == SignalType.CANCEL) {
+            span.tag(CouchbaseTags.DB_CANCELLED, "true");
+        }
+        span.asyncFinish();
+    }
+
+    private void abandon() {
+        if (subscribed == 0 && FINISHED.compareAndSet(this, 0, 1)) {
+            span.tag(CouchbaseTags.QUERY_ABANDONED, "true");
+            span.asyncFinish();
+        }
+    }
+
+    /**
+     * Finishes the spans of the results whose rows and metadata have not been subscribed in time. Started by the first
+     * row stream, so that applications without reactive queries get no thread.
+     */
+    static final class Sweeper {
+        private static final Set<QueryRowStream> PENDING = ConcurrentHashMap.newKeySet();
+
+        static {
+            long interval = Math.max(CouchbasePluginConfig.Plugin.Couchbase.ROW_STREAM_TIMEOUT_MS / 4, 1000);
+            Executors.newSingleThreadScheduledExecutor(new DefaultNamedThreadFactory("CouchbaseRowStreamSweeper"))
+                     .scheduleWithFixedDelay(
+                         new RunnableWithExceptionProtection(
+                             Sweeper::sweep, t -> LOGGER.error(t, "Failed to sweep couchbase row streams.")),
+                         interval, interval, TimeUnit.MILLISECONDS
+                     );
+        }
+
+        static void sweep() {
+            long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(CouchbasePluginConfig.Plugin.Couchbase.ROW_STREAM_TIMEOUT_MS);
+            long now = System.nanoTime();
+            for (QueryRowStream stream : PENDING) {
+                if (now - stream.resultNanos >= timeoutNanos) {
+                    PENDING.remove(stream);
+                    stream.abandon();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.skywalking.apm.plugin.couchbase.v76.support;
+
+import com.couchbase.client.java.query.QueryOptions;
+import org.apache.skywalking.apm.agent.core.context.ContextSnapshot;
+import org.apache.skywalking.apm.agent.core.context.trace.AbstractSpan;
+import org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance.EnhancedInstance;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscription;
+import reactor.core.CoreSubscriber;
+import reactor.util.context.Context;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * Subscriber placed between a reactive query, analytics or search {@code Mono} and its downstream. The exit span is
+ * created when the query is subscribed. When the query result is emitted, the span is handed over to its row stream, see
+ * {@link QueryRowStream}, so that it also covers the streaming of the rows; otherwise it is finished on the first
+ * terminal signal like in {@link TracingSubscriber}. The parent trace is carried in the Reactor {@link Context} the
+ * same way.
+ */
+public class QuerySubscriber<T> implements CoreSubscriber<T>, Subscription {
+
+    private static final AtomicIntegerFieldUpdater<QuerySubscriber> FINISHED =
+        AtomicIntegerFieldUpdater.newUpdater(QuerySubscriber.class, "finished");
+
+    private final CoreSubscriber<? super T> actual;
+    private final Context context;
+    private final AbstractSpan span;
+    private final EnhancedInstance cluster;
+    private final OperationDescriptor descriptor;
+    private final String statement;
+    private final ContextSnapshot snapshot;
+    private final long subscribeNanos;
+    private Subscription subscription;
+    private volatile int finished;
+
+    private QuerySubscriber(CoreSubscriber<? super T> actual, Context context, AbstractSpan span,
+        EnhancedInstance cluster, OperationDescriptor descriptor, String statement, ContextSnapshot snapshot) {
+        this.actual = actual;
+        this.context = context;
+        this.span = span;
+        this.cluster = cluster;
+        this.descriptor = descriptor;
+        this.statement = statement;
+        this.snapshot = snapshot;
+        this.subscribeNanos = System.nanoTime();
+    }
+
+    public static <T> void subscribe(Publisher<? extends T> source, CoreSubscriber<? super T> actual,
+        EnhancedInstance cluster, OperationDescriptor descriptor, String statement, QueryOptions.Built options,
+        ContextSnapshot assemblySnapshot) {
+        TracingSubscriber.subscribeTraced(source, actual, cluster, descriptor, assemblySnapshot, (context, span, snapshot) -> {
+            if (span != null) {
+                CouchbaseSpanHelper.tagServiceStatement(span, descriptor, statement);
+                if (options != null || "query".equals(descriptor.getOperation())) {
+                    CouchbaseSpanHelper.tagQueryOptions(span, options);
+                }
+            }
+            return new QuerySubscriber<T>(actual, context, span, cluster, descriptor, statement, snapshot);
+        });
+    }
+
+    @Override
+    public Context currentContext() {
+        return context;
+    }
+
+    @Override
+    public void onSubscribe(Subscription s) {
+        this.subscription = s;
+        actual.onSubscribe(this);
+    }
+
+    @Override
+    public void onNext(T result) {
+        if (FINISHED.compareAndSet(this, 0, 1)) {
+            recordMetrics(false);
+            if (span != null && !handOverToRows(result)) {
+                span.asyncFinish();
+            }
+        }
+        actual.onNext(result);
+    }
+
+    private boolean handOverToRows(T result) {
+        if (!(result instanceof EnhancedInstance)) {
+            return false;
+        }
+        Object coreResult = ((EnhancedInstance) result).getSkyWalkingDynamicField();
+        if (!(coreResult instanceof EnhancedInstance)) {
+            return false;
+        }
+        ((EnhancedInstance) coreResult).setSkyWalkingDynamicField(new QueryRowStream(span, subscribeNanos));
+        return true;
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        if (FINISHED.compareAndSet(this, 0, 1)) {
+            recordMetrics(true);
+            if (span != null) {
+                CouchbaseSpanHelper.logError(span, t);
+                span.asyncFinish();
+            } else {
+                UnsampledErrorRecorder.recordQuery(descriptor, CouchbaseInstanceState.peerOf(cluster), statement, snapshot, t);
+            }
+        }
+        actual.onError(t);
+    }
+
+    @Override
+    public void onComplete() {
+        if (FINISHED.compareAndSet(this, 0, 1)) {
+            recordMetrics(false);
+            if (span != null) {
+                span.asyncFinish();
+            }
+        }
+        actual.onComplete();
+    }
+
+    @Override
+    public void request(long n) {
+        subscription.request(n);
+    }
+
+    @Override
+    public void cancel() {
+        if (FINISHED.compareAndSet(this, 0, 1) && span != null) {
+            span.tag(CouchbaseTags.DB_CANCELLED, "true");
+            span.asyncFinish();
+        }
+        subscription.cancel();
+    }
+
+    private void recordMetrics(boolean error) {
+        OperationMetrics metrics = CouchbaseInstanceState.metricsOf(cluster, descriptor);
+        if (metrics != null) {
+            metrics.record(System.nanoTime() - subscribeNanos, error);
+        }
+    }
+}
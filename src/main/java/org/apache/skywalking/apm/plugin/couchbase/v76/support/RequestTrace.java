@@ -0,0 +1,63 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.skywalking.apm.plugin.couchbase.v76.support;
+
+import org.apache.skywalking.apm.agent.core.context.trace.AbstractSpan;
+import org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance.EnhancedInstance;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * State of a core request sent by a traced couchbase operation, kept in the dynamic field of the request: the span of
+ * the operation, linked when the request is first sent, and the total backoff of its retries.
+ */
+public final class RequestTrace {
+
+    private final AbstractSpan span;
+    private final AtomicLong backoffNanos = new AtomicLong();
+
+    public RequestTrace(AbstractSpan span) {
+        this.span = span;
+    }
+
+    /**
+     * @return the trace of {@code request}, or null if it was not sent by a traced operation
+     */
+    public static RequestTrace of(Object request) {
+        if (request instanceof EnhancedInstance) {
+            Object trace = ((EnhancedInstance) request).getSkyWalkingDynamicField();
+            if (trace instanceof RequestTrace) {
+                return (RequestTrace) trace;
+            }
+        }
+        return null;
+    }
+
+    public AbstractSpan getSpan() {
+        return span;
+    }
+
+    public void addBackoff(long nanos) {
+        backoffNanos.addAndGet(nanos);
+    }
+
+    public long getBackoffNanos() {
+        return backoffNanos.get();
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package org.apache.skywalking.apm.plugin.couchbase.v76.support;
+
+import org.apache.skywalking.apm.agent.core.meter.Gauge;
+import org.apache.skywalking.apm.agent.core.meter.MeterId;
+import org.apache.skywalking.apm.network.language.agent.v3.MeterData;
+
+import java.util.function.Supplier;
+
+/**
+ * Gauge which can stop being reported, the agent having no way to unregister a meter. The meter service skips the
+ * meters transformed to null, and keeps the registered instance for its id, so a retired gauge built again is
+ * reinstated.
+ */
+public class RetirableGauge extends Gauge {
+
+    private volatile boolean retired;
+
+    public RetirableGauge(MeterId meterId, Supplier<Double> getter) {
+        super(meterId, getter);
+    }
+
+    public void retire() {
+        retired = true;
+    }
+
+    public void reinstate() {
+        retired = false;
+    }
+
+    @Override
+    public MeterData.Builder transform() {
+        return retired ? null : super.transform();
+    }
+
+    public static class Builder extends Gauge.Builder {
+        private final Supplier<Double> getter;
+
+        public Builder(String name, Supplier<Double> getter) {
+            super(name, getter);
+            this.getter = getter;
+        }
+
+        @Override
+        protected RetirableGauge create(MeterId meterId) {
+            return new RetirableGauge(meterId, getter);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.skywalking.apm.plugin.couchbase.v76.support;
+
+import com.couchbase.client.core.retry.RetryReason;
+import org.apache.skywalking.apm.agent.core.meter.Counter;
+import org.apache.skywalking.apm.agent.core.meter.CounterMode;
+import org.apache.skywalking.apm.agent.core.meter.MeterFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Cluster wide retry meters, reported as rates: {@code couchbase_retries} tagged with the retry {@code reason}, and
+ * {@code couchbase_retry_backoff}, the milliseconds of backoff scheduled by those retries.
+ */
+public final class RetryMeters {
+
+    private static final AtomicReferenceArray<Counter> RETRIES = new AtomicReferenceArray<>(RetryReason.values().length);
+    private static volatile Counter BACKOFF;
+
+    private RetryMeters() {
+    }
+
+    public static void record(RetryReason reason, long backoffNanos) {
+        if (reason != null) {
+            retries(reason).increment(1);
+        }
+        backoff().increment(backoffNanos / (double) TimeUnit.MILLISECONDS.toNanos(1));
+    }
+
+    private static Counter retries(RetryReason reason) {
+        Counter counter = RETRIES.get(reason.ordinal());
+        if (counter == null) {
+            // Built once per reason, the meter service ignores a second meter with the same id
+            synchronized (RETRIES) {
+                counter = RETRIES.get(reason.ordinal());
+                if (counter == null) {
+                    counter = MeterFactory.counter("couchbase_retries")
+                                          .tag("reason", reason.name())
+                                          .mode(CounterMode.RATE)
+                                          .build();
+                    RETRIES.set(reason.ordinal(), counter);
+                }
+            }
+        }
+        return counter;
+    }
+
+    private static Counter backoff() {
+        Counter counter = BACKOFF;
+        if (counter == null) {
+            synchronized (RETRIES) {
+                counter = BACKOFF;
+                if (counter == null) {
+                    counter = MeterFactory.counter("couchbase_retry_backoff").mode(CounterMode.RATE).build();
+                    BACKOFF = counter;
+                }
+            }
+        }
+        return counter;
+    }
+}
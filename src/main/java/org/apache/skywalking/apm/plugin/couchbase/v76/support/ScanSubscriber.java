@@ -0,0 +1,240 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.skywalking.apm.plugin.couchbase.v76.support;
+
+import com.couchbase.client.core.kv.CoreRangeScanItem;
+import org.apache.skywalking.apm.agent.core.context.ContextSnapshot;
+import org.apache.skywalking.apm.agent.core.context.trace.AbstractSpan;
+import org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance.EnhancedInstance;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscription;
+import reactor.core.CoreSubscriber;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.SignalType;
+import reactor.util.context.Context;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Subscriber placed between a range, prefix or sampling scan and its downstream. A single exit span covers the whole
+ * stream, from subscribe until completion, error or cancellation, and no span is created per item. It is tagged with
+ * {@code db.scan.type} and {@code db.scan.ids_only} when subscribed and with:
+ * <ul>
+ *     <li>{@code db.scan.first_item_us}: time from the subscription to the first item.</li>
+ *     <li>{@code db.scan.items} and {@code db.scan.items_per_sec}: items delivered downstream, and per second since
+ *     the first one, which is bounded by how fast the application consumes them.</li>
+ *     <li>{@code db.scan.bytes}: key and content bytes received from the server.</li>
+ *     <li>{@code db.scan.partitions} and {@code db.scan.partitions_completed}: partitions whose stream was started and
+ *     fully drained when the scan terminated, and {@code db.scan.slowest_partition} /
+ *     {@code db.scan.slowest_partition_us}: the partition that took longest to drain.</li>
+ *     <li>{@code db.cancelled} when the stream was cancelled before its end, for example when the {@code Stream} of a
+ *     blocking scan is closed early.</li>
+ * </ul>
+ * The latency from subscribe to the terminal signal is recorded into the operation metrics whether or not the scan is
+ * traced. The bytes and partitions are counted by the partition streams of the scan, see {@link #trackPartition(Flux, short)},
+ * which find this subscriber in the Reactor {@link Context}. Items are signalled serially, so the item counters are
+ * plain fields; partitions are drained concurrently.
+ */
+public class ScanSubscriber<T> implements CoreSubscriber<T>, Subscription {
+
+    private static final String SCAN_CONTEXT_KEY = "skywalking.couchbase.scan";
+
+    private static final AtomicIntegerFieldUpdater<ScanSubscriber> FINISHED =
+        AtomicIntegerFieldUpdater.newUpdater(ScanSubscriber.class, "finished");
+    private static final AtomicIntegerFieldUpdater<ScanSubscriber> PARTITIONS =
+        AtomicIntegerFieldUpdater.newUpdater(ScanSubscriber.class, "partitions");
+    private static final AtomicIntegerFieldUpdater<ScanSubscriber> PARTITIONS_COMPLETED =
+        AtomicIntegerFieldUpdater.newUpdater(ScanSubscriber.class, "partitionsCompleted");
+
+    private final CoreSubscriber<? super T> actual;
+    private final Context context;
+    private final AbstractSpan span;
+    private final EnhancedInstance collection;
+    private final OperationDescriptor descriptor;
+    private final ContextSnapshot snapshot;
+    private final long subscribeNanos;
+    private final LongAdder bytes = new LongAdder();
+    private Subscription subscription;
+    private long firstItemNanos;
+    private long items;
+    private volatile int partitions;
+    private volatile int partitionsCompleted;
+    private int slowestPartition = -1;
+    private long slowestPartitionNanos;
+    private volatile int finished;
+
+    ScanSubscriber(CoreSubscriber<? super T> actual, Context context, AbstractSpan span,
+        EnhancedInstance collection, OperationDescriptor descriptor, ContextSnapshot snapshot) {
+        this.actual = actual;
+        this.context = span != null ? context.put(SCAN_CONTEXT_KEY, this) : context;
+        this.span = span;
+        this.collection = collection;
+        this.descriptor = descriptor;
+        this.snapshot = snapshot;
+        this.subscribeNanos = System.nanoTime();
+    }
+
+    public static <T> void subscribe(Publisher<? extends T> source, CoreSubscriber<? super T> actual,
+        EnhancedInstance collection, OperationDescriptor descriptor, String scanType, boolean idsOnly,
+        ContextSnapshot assemblySnapshot) {
+        TracingSubscriber.subscribeTraced(source, actual, collection, descriptor, assemblySnapshot, (context, span, snapshot) -> {
+            if (span != null) {
+                descriptor.tagStatic(span);
+                span.tag(CouchbaseTags.SCAN_TYPE, scanType);
+                span.tag(CouchbaseTags.SCAN_IDS_ONLY, Boolean.toString(idsOnly));
+            }
+            return new ScanSubscriber<T>(actual, context, span, collection, descriptor, snapshot);
+        });
+    }
+
+    /**
+     * Counts the bytes and the completion of the stream of one partition against the traced scan subscribing it. The
+     * stream is returned as is when the scan is not traced.
+     */
+    public static <T> Flux<T> trackPartition(Flux<T> partitionFlux, short partition) {
+        return Flux.deferContextual(contextView -> {
+            ScanSubscriber<?> scan = contextView.getOrDefault(SCAN_CONTEXT_KEY, null);
+            return scan == null ? partitionFlux : scan.track(partitionFlux, partition);
+        });
+    }
+
+    private <R> Flux<R> track(Flux<R> partitionFlux, short partition) {
+        PARTITIONS.incrementAndGet(this);
+        long startNanos = System.nanoTime();
+        return partitionFlux.doOnNext(this::onPartitionItem).doFinally(signal -> {
+            if (signal == SignalType.ON_COMPLETE) {
+                onPartitionCompleted(partition, System.nanoTime() - startNanos);
+            }
+        });
+    }
+
+    private void onPartitionItem(Object item) {
+        if (item instanceof CoreRangeScanItem) {
+            CoreRangeScanItem scanItem = (CoreRangeScanItem) item;
+            byte[] value = scanItem.value();
+            bytes.add(scanItem.keyBytes().length + (value != null ? value.length : 0));
+        }
+    }
+
+    private void onPartitionCompleted(short partition, long elapsedNanos) {
+        PARTITIONS_COMPLETED.incrementAndGet(this);
+        synchronized (this) {
+            if (elapsedNanos > slowestPartitionNanos) {
+                slowestPartitionNanos = elapsedNanos;
+                slowestPartition = partition;
+            }
+        }
+    }
+
+    @Override
+    public Context currentContext() {
+        return context;
+    }
+
+    @Override
+    public void onSubscribe(Subscription s) {
+        this.subscription = s;
+        actual.onSubscribe(this);
+    }
+
+    @Override
+    public void onNext(T t) {
+        if (items++ == 0) {
+            firstItemNanos = System.nanoTime();
+        }
+        actual.onNext(t);
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        if (FINISHED.compareAndSet(this, 0, 1)) {
+            recordMetrics(true);
+            if (span != null) {
+                CouchbaseSpanHelper.logError(span, t);
+                finish(false);
+            } else {
+                UnsampledErrorRecorder.record(descriptor, CouchbaseInstanceState.peerOf(collection), null, snapshot, t);
+            }
+        }
+        actual.onError(t);
+    }
+
+    @Override
+    public void onComplete() {
+        if (FINISHED.compareAndSet(this, 0, 1)) {
+            recordMetrics(false);
+            if (span != null) {
+                finish(false);
+            }
+        }
+        actual.onComplete();
+    }
+
+    @Override
+    public void request(long n) {
+        subscription.request(n);
+    }
+
+    @Override
+    public void cancel() {
+        if (FINISHED.compareAndSet(this, 0, 1)) {
+            recordMetrics(false);
+            if (span != null) {
+                finish(true);
+            }
+        }
+        subscription.cancel();
+    }
+
+    private void finish(boolean cancelled) {
+        long endNanos = System.nanoTime();
+        if (items > 0) {
+            span.tag(CouchbaseTags.SCAN_FIRST_ITEM_US, Long.toString(TimeUnit.NANOSECONDS.toMicros(firstItemNanos - subscribeNanos)));
+            long streamNanos = endNanos - firstItemNanos;
+            if (streamNanos > 0) {
+                span.tag(CouchbaseTags.SCAN_ITEMS_PER_SEC, Long.toString(items * TimeUnit.SECONDS.toNanos(1) / streamNanos));
+            }
+        }
+        span.tag(CouchbaseTags.SCAN_ITEMS, Long.toString(items));
+        if (partitions > 0) {
+            span.tag(CouchbaseTags.SCAN_BYTES, Long.toString(bytes.sum()));
+            span.tag(CouchbaseTags.SCAN_PARTITIONS, Integer.toString(partitions));
+            span.tag(CouchbaseTags.SCAN_PARTITIONS_COMPLETED, Integer.toString(partitionsCompleted));
+            synchronized (this) {
+                if (slowestPartition >= 0) {
+                    span.tag(CouchbaseTags.SCAN_SLOWEST_PARTITION, Integer.toString(slowestPartition));
+                    span.tag(CouchbaseTags.SCAN_SLOWEST_PARTITION_US, Long.toString(TimeUnit.NANOSECONDS.toMicros(slowestPartitionNanos)));
+                }
+            }
+        }
+        if (cancelled) {
+            span.tag(CouchbaseTags.DB_CANCELLED, "true");
+        }
+        span.asyncFinish();
+    }
+
+    private void recordMetrics(boolean error) {
+        OperationMetrics metrics = CouchbaseInstanceState.metricsOf(collection, descriptor);
+        if (metrics != null) {
+            metrics.record(System.nanoTime() - subscribeNanos, error);
+        }
+    }
+}
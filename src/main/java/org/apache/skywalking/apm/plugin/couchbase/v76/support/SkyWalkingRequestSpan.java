@@ -0,0 +1,225 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.skywalking.apm.plugin.couchbase.v76.support;
+
+import com.couchbase.client.core.cnc.RequestSpan;
+import com.couchbase.client.core.cnc.TracingIdentifiers;
+import com.couchbase.client.core.msg.RequestContext;
+import org.apache.skywalking.apm.agent.core.context.trace.AbstractSpan;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * {@link RequestSpan} forwarding to the span of the wrapped tracer, created by {@link SkyWalkingRequestTracer}. A
+ * request span accumulates the durations of its encoding and dispatch phases, which end on the IO threads, and the
+ * server durations reported by the SDK, and tags them on the exit span of the operation when the request ends:
+ * <ul>
+ *     <li>{@code couchbase.encode_us}: time spent encoding the request.</li>
+ *     <li>{@code couchbase.dispatch_us}: time between writing the request and reading its response, over all
+ *     attempts; it includes the server duration.</li>
+ *     <li>{@code couchbase.server_us}: time spent on the server, over all attempts.</li>
+ *     <li>{@code couchbase.queue_us}: the rest of the request time, spent queued or waiting for retries.</li>
+ * </ul>
+ * The SDK ends the request span before completing the future returned to the application, so the exit span is still
+ * open when it is tagged.
+ */
+public class SkyWalkingRequestSpan implements RequestSpan {
+
+    enum Phase {
+        ENCODE, DISPATCH
+    }
+
+    private static final AtomicLongFieldUpdater<SkyWalkingRequestSpan> ENCODE_NANOS =
+        AtomicLongFieldUpdater.newUpdater(SkyWalkingRequestSpan.class, "encodeNanos");
+    private static final AtomicLongFieldUpdater<SkyWalkingRequestSpan> DISPATCH_NANOS =
+        AtomicLongFieldUpdater.newUpdater(SkyWalkingRequestSpan.class, "dispatchNanos");
+    private static final AtomicLongFieldUpdater<SkyWalkingRequestSpan> SERVER_MICROS =
+        AtomicLongFieldUpdater.newUpdater(SkyWalkingRequestSpan.class, "serverMicros");
+
+    private final RequestSpan delegate;
+    private final AbstractSpan span;
+    private final long startNanos;
+    private volatile long encodeNanos;
+    private volatile long dispatchNanos;
+    private volatile long serverMicros;
+
+    private SkyWalkingRequestSpan(RequestSpan delegate, AbstractSpan span) {
+        this.delegate = delegate;
+        this.span = span;
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * @return a request span bound to the exit span of the couchbase operation executing on this thread, or
+     * {@code delegate} itself if the operation is not traced
+     */
+    static RequestSpan bindToOperation(RequestSpan delegate) {
+        AbstractSpan span = InvocationFrames.current().getOperationSpan();
+        return span == null ? delegate : new SkyWalkingRequestSpan(delegate, span);
+    }
+
+    RequestSpan getDelegate() {
+        return delegate;
+    }
+
+    RequestSpan phase(RequestSpan phaseDelegate, Phase phase) {
+        return new PhaseSpan(phaseDelegate, this, phase);
+    }
+
+    @Override
+    public void attribute(String key, String value) {
+        delegate.attribute(key, value);
+    }
+
+    @Override
+    public void attribute(String key, boolean value) {
+        delegate.attribute(key, value);
+    }
+
+    @Override
+    public void attribute(String key, long value) {
+        delegate.attribute(key, value);
+    }
+
+    @Override
+    public void lowCardinalityAttribute(String key, String value) {
+        delegate.lowCardinalityAttribute(key, value);
+    }
+
+    @Override
+    public void lowCardinalityAttribute(String key, boolean value) {
+        delegate.lowCardinalityAttribute(key, value);
+    }
+
+    @Override
+    public void lowCardinalityAttribute(String key, long value) {
+        delegate.lowCardinalityAttribute(key, value);
+    }
+
+    @Override
+    public void event(String name, Instant timestamp) {
+        delegate.event(name, timestamp);
+    }
+
+    @Override
+    public void status(StatusCode status) {
+        delegate.status(status);
+    }
+
+    @Override
+    public void recordException(Throwable err) {
+        delegate.recordException(err);
+    }
+
+    @Override
+    public void requestContext(RequestContext requestContext) {
+        delegate.requestContext(requestContext);
+    }
+
+    @Override
+    public void end() {
+        long totalNanos = System.nanoTime() - startNanos;
+        long encode = encodeNanos;
+        long dispatch = dispatchNanos;
+        span.tag(CouchbaseTags.ENCODE_US, Long.toString(TimeUnit.NANOSECONDS.toMicros(encode)));
+        span.tag(CouchbaseTags.DISPATCH_US, Long.toString(TimeUnit.NANOSECONDS.toMicros(dispatch)));
+        span.tag(CouchbaseTags.SERVER_US, Long.toString(serverMicros));
+        span.tag(CouchbaseTags.QUEUE_US, Long.toString(TimeUnit.NANOSECONDS.toMicros(Math.max(0, totalNanos - encode - dispatch))));
+        delegate.end();
+    }
+
+    /**
+     * Encoding or dispatch phase of a request, adding its duration to the request when it ends.
+     */
+    private static class PhaseSpan implements RequestSpan {
+        private final RequestSpan delegate;
+        private final SkyWalkingRequestSpan request;
+        private final Phase phase;
+        private final long startNanos;
+
+        private PhaseSpan(RequestSpan delegate, SkyWalkingRequestSpan request, Phase phase) {
+            this.delegate = delegate;
+            this.request = request;
+            this.phase = phase;
+            this.startNanos = System.nanoTime();
+        }
+
+        @Override
+        public void attribute(String key, String value) {
+            delegate.attribute(key, value);
+        }
+
+        @Override
+        public void attribute(String key, boolean value) {
+            delegate.attribute(key, value);
+        }
+
+        @Override
+        public void attribute(String key, long value) {
+            if (TracingIdentifiers.ATTR_SERVER_DURATION.equals(key)) {
+                SERVER_MICROS.addAndGet(request, value);
+            }
+            delegate.attribute(key, value);
+        }
+
+        @Override
+        public void lowCardinalityAttribute(String key, String value) {
+            delegate.lowCardinalityAttribute(key, value);
+        }
+
+        @Override
+        public void lowCardinalityAttribute(String key, boolean value) {
+            delegate.lowCardinalityAttribute(key, value);
+        }
+
+        @Override
+        public void lowCardinalityAttribute(String key, long value) {
+            delegate.lowCardinalityAttribute(key, value);
+        }
+
+        @Override
+        public void event(String name, Instant timestamp) {
+            delegate.event(name, timestamp);
+        }
+
+        @Override
+        public void status(StatusCode status) {
+            delegate.status(status);
+        }
+
+        @Override
+        public void recordException(Throwable err) {
+            delegate.recordException(err);
+        }
+
+        @Override
+        public void requestContext(RequestContext requestContext) {
+            delegate.requestContext(requestContext);
+        }
+
+        @Override
+        public void end() {
+            long nanos = System.nanoTime() - startNanos;
+            (phase == Phase.ENCODE ? ENCODE_NANOS : DISPATCH_NANOS).addAndGet(request, nanos);
+            delegate.end();
+        }
+    }
+}
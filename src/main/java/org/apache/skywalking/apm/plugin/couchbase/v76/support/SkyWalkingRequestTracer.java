@@ -0,0 +1,72 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.skywalking.apm.plugin.couchbase.v76.support;
+
+import com.couchbase.client.core.cnc.RequestSpan;
+import com.couchbase.client.core.cnc.RequestTracer;
+import com.couchbase.client.core.cnc.TracingIdentifiers;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+/**
+ * {@link RequestTracer} wrapping the one configured in the {@code CoreEnvironment}. Every call is forwarded to the
+ * wrapped tracer; in addition, the request spans the SDK opens while a traced couchbase operation is executing are
+ * bound to the operation's exit span, and the SDK's own encoding, dispatch and server duration measurements are tagged
+ * on it when the request completes. Requests of untraced operations get the wrapped tracer's span as is.
+ */
+public class SkyWalkingRequestTracer implements RequestTracer {
+
+    private final RequestTracer delegate;
+
+    public SkyWalkingRequestTracer(RequestTracer delegate) {
+        this.delegate = delegate;
+    }
+
+    public RequestTracer getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public RequestSpan requestSpan(String name, RequestSpan parent) {
+        if (parent instanceof SkyWalkingRequestSpan) {
+            SkyWalkingRequestSpan swParent = (SkyWalkingRequestSpan) parent;
+            RequestSpan span = delegate.requestSpan(name, swParent.getDelegate());
+            if (TracingIdentifiers.SPAN_REQUEST_ENCODING.equals(name)) {
+                return swParent.phase(span, SkyWalkingRequestSpan.Phase.ENCODE);
+            }
+            if (TracingIdentifiers.SPAN_DISPATCH.equals(name)) {
+                return swParent.phase(span, SkyWalkingRequestSpan.Phase.DISPATCH);
+            }
+            return span;
+        }
+        RequestSpan span = delegate.requestSpan(name, parent);
+        return SkyWalkingRequestSpan.bindToOperation(span);
+    }
+
+    @Override
+    public Mono<Void> start() {
+        return delegate.start();
+    }
+
+    @Override
+    public Mono<Void> stop(Duration timeout) {
+        return delegate.stop(timeout);
+    }
+}
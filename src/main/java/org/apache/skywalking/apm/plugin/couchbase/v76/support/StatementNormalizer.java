@@ -0,0 +1,189 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.skywalking.apm.plugin.couchbase.v76.support;
+
+import org.apache.skywalking.apm.plugin.couchbase.v76.CouchbasePluginConfig;
+
+/**
+ * Normalizes N1QL statements by replacing string and numeric literals with {@code ?}, collapsing whitespace and
+ * folding literal arrays to a single element. Quoted identifiers, named and positional parameters are kept as is.
+ * Results are cached by raw statement, so a repeated statement costs a single cache lookup.
+ */
+public final class StatementNormalizer {
+
+    private static final BoundedLruCache<String, NormalizedStatement> CACHE =
+        new BoundedLruCache<>(CouchbasePluginConfig.Plugin.Couchbase.STATEMENT_CACHE_SIZE);
+
+    private StatementNormalizer() {
+    }
+
+    public static NormalizedStatement normalize(String statement) {
+        NormalizedStatement normalized = CACHE.get(statement);
+        if (normalized == null) {
+            String text = normalizeText(statement);
+            normalized = new NormalizedStatement(CouchbaseSpanHelper.truncateStatement(text), Fingerprint.of(text));
+            CACHE.put(statement, normalized);
+        }
+        return normalized;
+    }
+
+    /**
+     * @return the normalized statement if it is cached, null otherwise
+     */
+    static NormalizedStatement cached(String statement) {
+        return CACHE.get(statement);
+    }
+
+    static String normalizeText(String statement) {
+        int length = statement.length();
+        StringBuilder out = new StringBuilder(length);
+        int arrayDepth = 0;
+        int i = 0;
+        while (i < length) {
+            char c = statement.charAt(i);
+            if (c == '\'' || c == '"') {
+                i = skipQuoted(statement, i, c);
+                appendPlaceholder(out, arrayDepth);
+            } else if (c == '`') {
+                int end = skipQuoted(statement, i, c);
+                out.append(statement, i, end);
+                i = end;
+            } else if (isDigit(c) && !isIdentifierPart(previous(out))) {
+                i = skipNumber(statement, i);
+                appendPlaceholder(out, arrayDepth);
+            } else if (Character.isWhitespace(c)) {
+                if (out.length() > 0 && previous(out) != ' ') {
+                    out.append(' ');
+                }
+                i++;
+            } else {
+                if (c == '[') {
+                    arrayDepth++;
+                } else if (c == ']' && arrayDepth > 0) {
+                    arrayDepth--;
+                }
+                out.append(c);
+                i++;
+            }
+        }
+        int end = out.length();
+        while (end > 0 && out.charAt(end - 1) == ' ') {
+            end--;
+        }
+        out.setLength(end);
+        return out.toString();
+    }
+
+    /**
+     * Inside an array, {@code [?, ?, ?]} is folded to {@code [?]} so that the statement shape does not depend on
+     * the number of elements.
+     */
+    private static void appendPlaceholder(StringBuilder out, int arrayDepth) {
+        if (arrayDepth > 0) {
+            int end = out.length();
+            while (end > 0 && out.charAt(end - 1) == ' ') {
+                end--;
+            }
+            if (end > 0 && out.charAt(end - 1) == ',') {
+                int previous = end - 1;
+                while (previous > 0 && out.charAt(previous - 1) == ' ') {
+                    previous--;
+                }
+                if (previous > 0 && out.charAt(previous - 1) == '?') {
+                    out.setLength(previous);
+                    return;
+                }
+            }
+        }
+        out.append('?');
+    }
+
+    private static int skipQuoted(String statement, int start, char quote) {
+        int i = start + 1;
+        int length = statement.length();
+        while (i < length) {
+            char c = statement.charAt(i);
+            if (c == '\\') {
+                i += 2;
+            } else if (c == quote) {
+                if (i + 1 < length && statement.charAt(i + 1) == quote) {
+                    i += 2;
+                } else {
+                    return i + 1;
+                }
+            } else {
+                i++;
+            }
+        }
+        return length;
+    }
+
+    private static int skipNumber(String statement, int start) {
+        int i = start;
+        int length = statement.length();
+        while (i < length) {
+            char c = statement.charAt(i);
+            if (isDigit(c) || c == '.') {
+                i++;
+            } else if ((c == 'e' || c == 'E') && i + 1 < length) {
+                char next = statement.charAt(i + 1);
+                if (isDigit(next)) {
+                    i += 2;
+                } else if ((next == '+' || next == '-') && i + 2 < length && isDigit(statement.charAt(i + 2))) {
+                    i += 3;
+                } else {
+                    break;
+                }
+            } else {
+                break;
+            }
+        }
+        return i;
+    }
+
+    private static char previous(StringBuilder out) {
+        return out.length() == 0 ? ' ' : out.charAt(out.length() - 1);
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+    }
+
+    public static class NormalizedStatement {
+        private final String statement;
+        private final String fingerprint;
+
+        NormalizedStatement(String statement, String fingerprint) {
+            this.statement = statement;
+            this.fingerprint = fingerprint;
+        }
+
+        public String getStatement() {
+            return statement;
+        }
+
+        public String getFingerprint() {
+            return fingerprint;
+        }
+    }
+}
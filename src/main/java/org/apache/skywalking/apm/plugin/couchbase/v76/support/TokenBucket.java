@@ -0,0 +1,56 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.skywalking.apm.plugin.couchbase.v76.support;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket, implemented as a generic cell rate algorithm: the only state is the theoretical arrival
+ * time of the next permit, updated with a single CAS. Up to one second worth of permits can be taken in a burst.
+ */
+public class TokenBucket {
+
+    private static final long BURST_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final long intervalNanos;
+    private final AtomicLong theoreticalArrivalNanos;
+
+    public TokenBucket(int permitsPerSecond) {
+        this.intervalNanos = permitsPerSecond > 0 ? BURST_NANOS / permitsPerSecond : Long.MAX_VALUE;
+        this.theoreticalArrivalNanos = new AtomicLong(System.nanoTime());
+    }
+
+    public boolean tryAcquire() {
+        if (intervalNanos == Long.MAX_VALUE) {
+            return false;
+        }
+        long now = System.nanoTime();
+        while (true) {
+            long arrival = theoreticalArrivalNanos.get();
+            long next = (arrival - now > 0 ? arrival : now) + intervalNanos;
+            if (next - now > BURST_NANOS) {
+                return false;
+            }
+            if (theoreticalArrivalNanos.compareAndSet(arrival, next)) {
+                return true;
+            }
+        }
+    }
+}
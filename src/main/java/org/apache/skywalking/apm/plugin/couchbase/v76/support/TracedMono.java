@@ -0,0 +1,51 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.skywalking.apm.plugin.couchbase.v76.support;
+
+import org.apache.skywalking.apm.agent.core.context.ContextSnapshot;
+import org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance.EnhancedInstance;
+import reactor.core.CoreSubscriber;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoOperator;
+
+/**
+ * Wraps a {@code ReactiveCollection} {@link Mono} so that its exit span covers the subscription instead of the
+ * assembly, see {@link TracingSubscriber}.
+ */
+public class TracedMono<T> extends MonoOperator<T, T> {
+
+    private final EnhancedInstance collection;
+    private final OperationDescriptor descriptor;
+    private final String docId;
+    private final ContextSnapshot assemblySnapshot;
+
+    public TracedMono(Mono<? extends T> source, EnhancedInstance collection, OperationDescriptor descriptor, String docId,
+        ContextSnapshot assemblySnapshot) {
+        super(source);
+        this.collection = collection;
+        this.descriptor = descriptor;
+        this.docId = docId;
+        this.assemblySnapshot = assemblySnapshot;
+    }
+
+    @Override
+    public void subscribe(CoreSubscriber<? super T> actual) {
+        TracingSubscriber.subscribe(source, actual, collection, descriptor, docId, assemblySnapshot);
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.skywalking.apm.plugin.couchbase.v76.support;
+
+import com.couchbase.client.java.query.QueryOptions;
+import org.apache.skywalking.apm.agent.core.context.ContextSnapshot;
+import org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance.EnhancedInstance;
+import reactor.core.CoreSubscriber;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoOperator;
+
+/**
+ * Wraps the {@link Mono} returned by {@code ReactiveCluster#query}, or by an analytics or search call of a
+ * {@code ReactiveCluster} or {@code ReactiveScope}, so that its exit span covers the subscription instead of the
+ * assembly, see {@link QuerySubscriber}.
+ */
+public class TracedQueryMono<T> extends MonoOperator<T, T> {
+
+    private final EnhancedInstance cluster;
+    private final OperationDescriptor descriptor;
+    private final String statement;
+    private final QueryOptions.Built options;
+    private final ContextSnapshot assemblySnapshot;
+
+    /**
+     * @param options the options of a N1QL query, tagged on its span, null for the defaults or other services
+     */
+    public TracedQueryMono(Mono<? extends T> source, EnhancedInstance cluster, OperationDescriptor descriptor,
+        String statement, QueryOptions.Built options, ContextSnapshot assemblySnapshot) {
+        super(source);
+        this.cluster = cluster;
+        this.descriptor = descriptor;
+        this.statement = statement;
+        this.options = options;
+        this.assemblySnapshot = assemblySnapshot;
+    }
+
+    @Override
+    public void subscribe(CoreSubscriber<? super T> actual) {
+        QuerySubscriber.subscribe(source, actual, cluster, descriptor, statement, options, assemblySnapshot);
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.skywalking.apm.plugin.couchbase.v76.support;
+
+import com.couchbase.client.java.transactions.TransactionAttemptContext;
+import org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance.EnhancedInstance;
+
+import java.util.function.Consumer;
+
+/**
+ * Wraps the logic of a transaction, run once per attempt, so that every attempt gets a span and the attempt context of
+ * the SDK is bound to the {@link TransactionTrace} of the transaction, for its commit and rollback to be timed.
+ */
+public class TracedTransactionLogic implements Consumer<TransactionAttemptContext> {
+
+    private final Consumer<TransactionAttemptContext> delegate;
+    private final TransactionTrace trace;
+
+    public TracedTransactionLogic(Consumer<TransactionAttemptContext> delegate, TransactionTrace trace) {
+        this.delegate = delegate;
+        this.trace = trace;
+    }
+
+    public TransactionTrace getTrace() {
+        return trace;
+    }
+
+    @Override
+    public void accept(TransactionAttemptContext ctx) {
+        Object attemptContext = ctx;
+        Object coreContext = attemptContext instanceof EnhancedInstance ? ((EnhancedInstance) attemptContext).getSkyWalkingDynamicField() : null;
+        if (coreContext instanceof EnhancedInstance) {
+            ((EnhancedInstance) coreContext).setSkyWalkingDynamicField(trace);
+        }
+        trace.attemptStarted();
+        try {
+            delegate.accept(ctx);
+        } catch (RuntimeException | Error t) {
+            trace.attemptFailed(t);
+            throw t;
+        } finally {
+            trace.attemptFinished();
+        }
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.skywalking.apm.plugin.couchbase.v76.support;
+
+import org.apache.skywalking.apm.agent.core.context.ContextManager;
+import org.apache.skywalking.apm.agent.core.context.ContextSnapshot;
+import org.apache.skywalking.apm.agent.core.context.trace.AbstractSpan;
+import org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance.EnhancedInstance;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscription;
+import reactor.core.CoreSubscriber;
+import reactor.util.context.Context;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * Subscriber placed between a {@code ReactiveCollection} publisher and its downstream. The exit span is created when
+ * the publisher is subscribed, and finished exactly once on the first terminal signal: complete, error or cancel, which
+ * also records the latency since the subscription into the operation metrics. Subscriptions that are not sampled get no
+ * span, but their metrics and errors are still recorded.
+ * The parent trace is carried in the Reactor {@link Context} under {@link #SNAPSHOT_CONTEXT_KEY}, so nothing is read
+ * from or left behind in the thread-locals of the threads emitting the signals. {@code onNext} only delegates.
+ */
+public class TracingSubscriber<T> implements CoreSubscriber<T>, Subscription {
+
+    public static final String SNAPSHOT_CONTEXT_KEY = "skywalking.couchbase.contextSnapshot";
+
+    private static final AtomicIntegerFieldUpdater<TracingSubscriber> FINISHED =
+        AtomicIntegerFieldUpdater.newUpdater(TracingSubscriber.class, "finished");
+
+    private final CoreSubscriber<? super T> actual;
+    private final Context context;
+    private final AbstractSpan span;
+    private final EnhancedInstance collection;
+    private final OperationDescriptor descriptor;
+    private final String docId;
+    private final ContextSnapshot snapshot;
+    private final long subscribeNanos;
+    private Subscription subscription;
+    private volatile int finished;
+
+    TracingSubscriber(CoreSubscriber<? super T> actual, Context context, AbstractSpan span,
+        EnhancedInstance collection, OperationDescriptor descriptor, String docId, ContextSnapshot snapshot) {
+        this.actual = actual;
+        this.context = context;
+        this.span = span;
+        this.collection = collection;
+        this.descriptor = descriptor;
+        this.docId = docId;
+        this.snapshot = snapshot;
+        this.subscribeNanos = System.nanoTime();
+    }
+
+    public static <T> void subscribe(Publisher<? extends T> source, CoreSubscriber<? super T> actual,
+        EnhancedInstance collection, OperationDescriptor descriptor, String docId, ContextSnapshot assemblySnapshot) {
+        subscribeTraced(source, actual, collection, descriptor, assemblySnapshot, (context, span, snapshot) -> {
+            if (span != null) {
+                descriptor.tagStatic(span);
+                CouchbaseSpanHelper.tagFormattedDocumentId(span, docId);
+            }
+            return new TracingSubscriber<T>(actual, context, span, collection, descriptor, docId, snapshot);
+        });
+    }
+
+    /**
+     * Starts the exit span of a traced subscription on the subscribing thread, if sampled, and subscribes
+     * {@code source} through the subscriber built by {@code factory}, which may tag the span. The parent trace is the
+     * one already carried in the Reactor {@link Context} of {@code actual}, else the one captured at assembly, and is
+     * put in the context of the new subscriber. Couchbase calls made while the source is being subscribed belong to
+     * this operation and are not traced on their own.
+     */
+    static <T> void subscribeTraced(Publisher<? extends T> source, CoreSubscriber<? super T> actual,
+        EnhancedInstance instance, OperationDescriptor descriptor, ContextSnapshot assemblySnapshot, Factory<T> factory) {
+        Context context = actual.currentContext();
+        ContextSnapshot snapshot = context.getOrDefault(SNAPSHOT_CONTEXT_KEY, assemblySnapshot);
+        if (snapshot != null && !context.hasKey(SNAPSHOT_CONTEXT_KEY)) {
+            context = context.put(SNAPSHOT_CONTEXT_KEY, snapshot);
+        }
+
+        AbstractSpan span = null;
+        if (CouchbaseInstanceState.isSampled(instance, descriptor)) {
+            span = ContextManager.createExitSpan(descriptor.getOperationName(), CouchbaseInstanceState.peerOf(instance));
+            if (snapshot != null) {
+                ContextManager.continued(snapshot);
+            }
+            span.prepareForAsync();
+            ContextManager.stopSpan();
+        }
+        InvocationFrames frames = InvocationFrames.current();
+        frames.enter(false);
+        frames.attach(span);
+        try {
+            source.subscribe(factory.create(context, span, snapshot));
+        } finally {
+            frames.exit();
+        }
+    }
+
+    /**
+     * Builds the subscriber of a traced subscription.
+     */
+    interface Factory<T> {
+        /**
+         * @param span the exit span of the subscription, null if it is not sampled
+         */
+        CoreSubscriber<T> create(Context context, AbstractSpan span, ContextSnapshot snapshot);
+    }
+
+    @Override
+    public Context currentContext() {
+        return context;
+    }
+
+    @Override
+    public void onSubscribe(Subscription s) {
+        this.subscription = s;
+        actual.onSubscribe(this);
+    }
+
+    @Override
+    public void onNext(T t) {
+        actual.onNext(t);
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        if (FINISHED.compareAndSet(this, 0, 1)) {
+            recordMetrics(true);
+            if (span != null) {
+                CouchbaseSpanHelper.logError(span, t);
+                span.asyncFinish();
+            } else {
+                UnsampledErrorRecorder.record(descriptor, CouchbaseInstanceState.peerOf(collection), docId, snapshot, t);
+            }
+        }
+        actual.onError(t);
+    }
+
+    @Override
+    public void onComplete() {
+        if (FINISHED.compareAndSet(this, 0, 1)) {
+            recordMetrics(false);
+            if (span != null) {
+                span.asyncFinish();
+            }
+        }
+        actual.onComplete();
+    }
+
+    @Override
+    public void request(long n) {
+        subscription.request(n);
+    }
+
+    @Override
+    public void cancel() {
+        if (FINISHED.compareAndSet(this, 0, 1)) {
+            recordMetrics(false);
+            if (span != null) {
+                span.tag(CouchbaseTags.DB_CANCELLED, "true");
+                span.asyncFinish();
+            }
+        }
+        subscription.cancel();
+    }
+
+    private void recordMetrics(boolean error) {
+        OperationMetrics metrics = CouchbaseInstanceState.metricsOf(collection, descriptor);
+        if (metrics != null) {
+            metrics.record(System.nanoTime() - subscribeNanos, error);
+        }
+    }
+}
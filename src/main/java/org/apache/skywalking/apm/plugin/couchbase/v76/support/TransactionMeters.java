@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.skywalking.apm.plugin.couchbase.v76.support;
+
+import org.apache.skywalking.apm.agent.core.meter.Counter;
+import org.apache.skywalking.apm.agent.core.meter.CounterMode;
+import org.apache.skywalking.apm.agent.core.meter.Histogram;
+import org.apache.skywalking.apm.agent.core.meter.MeterFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cluster wide transaction meters. Counters are reported as rates, so that the throughput and the abort rate of the
+ * transactions read directly from them:
+ * <ul>
+ *     <li>{@code couchbase_transactions}, tagged with the {@code outcome}: {@code committed}, {@code failed},
+ *     {@code expired} or {@code ambiguous}.</li>
+ *     <li>{@code couchbase_transaction_attempts}, {@code couchbase_transaction_conflicts} and
+ *     {@code couchbase_transaction_expiries}, attempts started, and attempts failed on a write-write conflict or on
+ *     their expiry.</li>
+ *     <li>{@code couchbase_transaction_latency}, {@code couchbase_transaction_commit_latency} and
+ *     {@code couchbase_transaction_rollback_latency} histograms, in microseconds, bucketed by
+ *     {@link NodeLatencyMeters#LATENCY_STEPS_US}.</li>
+ * </ul>
+ */
+public final class TransactionMeters {
+
+    static final String COMMITTED = "committed";
+    static final String FAILED = "failed";
+    static final String EXPIRED = "expired";
+    static final String AMBIGUOUS = "ambiguous";
+
+    private static final double NANOS_PER_MICRO = TimeUnit.MICROSECONDS.toNanos(1);
+
+    private static final Counter COMMITTED_TRANSACTIONS = transactions(COMMITTED);
+    private static final Counter FAILED_TRANSACTIONS = transactions(FAILED);
+    private static final Counter EXPIRED_TRANSACTIONS = transactions(EXPIRED);
+    private static final Counter AMBIGUOUS_TRANSACTIONS = transactions(AMBIGUOUS);
+    private static final Counter ATTEMPTS = MeterFactory.counter("couchbase_transaction_attempts").mode(CounterMode.RATE).build();
+    private static final Counter CONFLICTS = MeterFactory.counter("couchbase_transaction_conflicts").mode(CounterMode.RATE).build();
+    private static final Counter EXPIRIES = MeterFactory.counter("couchbase_transaction_expiries").mode(CounterMode.RATE).build();
+    private static final Histogram LATENCY = latency("couchbase_transaction_latency");
+    private static final Histogram COMMIT_LATENCY = latency("couchbase_transaction_commit_latency");
+    private static final Histogram ROLLBACK_LATENCY = latency("couchbase_transaction_rollback_latency");
+
+    private TransactionMeters() {
+    }
+
+    static void recordTransaction(String outcome, long latencyNanos) {
+        switch (outcome) {
+            case COMMITTED:
+                COMMITTED_TRANSACTIONS.increment(1);
+                break;
+            case EXPIRED:
+                EXPIRED_TRANSACTIONS.increment(1);
+                break;
+            case AMBIGUOUS:
+                AMBIGUOUS_TRANSACTIONS.increment(1);
+                break;
+            default:
+                FAILED_TRANSACTIONS.increment(1);
+        }
+        LATENCY.addValue(latencyNanos / NANOS_PER_MICRO);
+    }
+
+    static void recordAttempt() {
+        ATTEMPTS.increment(1);
+    }
+
+    static void recordConflict() {
+        CONFLICTS.increment(1);
+    }
+
+    static void recordExpiry() {
+        EXPIRIES.increment(1);
+    }
+
+    static void recordCommit(long latencyNanos) {
+        COMMIT_LATENCY.addValue(latencyNanos / NANOS_PER_MICRO);
+    }
+
+    static void recordRollback(long latencyNanos) {
+        ROLLBACK_LATENCY.addValue(latencyNanos / NANOS_PER_MICRO);
+    }
+
+    private static Counter transactions(String outcome) {
+        return MeterFactory.counter("couchbase_transactions").tag("outcome", outcome).mode(CounterMode.RATE).build();
+    }
+
+    private static Histogram latency(String name) {
+        return MeterFactory.histogram(name).steps(NodeLatencyMeters.LATENCY_STEPS_US).build();
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.skywalking.apm.plugin.couchbase.v76.support;
+
+import com.couchbase.client.core.error.transaction.AttemptExpiredException;
+import com.couchbase.client.core.error.transaction.TransactionOperationFailedException;
+import com.couchbase.client.core.transaction.error.internal.ErrorClass;
+import com.couchbase.client.java.transactions.error.TransactionCommitAmbiguousException;
+import com.couchbase.client.java.transactions.error.TransactionExpiredException;
+import org.apache.skywalking.apm.agent.core.context.ContextManager;
+import org.apache.skywalking.apm.agent.core.context.ContextSnapshot;
+import org.apache.skywalking.apm.agent.core.context.trace.AbstractSpan;
+import org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance.EnhancedInstance;
+import org.apache.skywalking.apm.plugin.couchbase.v76.CouchbasePluginConfig;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * State of one {@code Transactions#run} call, shared by the thread running it, the attempts, which the SDK may run on
+ * its own scheduler, and the commit and rollback of the attempts. When the transaction is traced, its local span is
+ * tagged on completion with:
+ * <ul>
+ *     <li>{@code db.transaction.outcome} and {@code db.transaction.attempts}.</li>
+ *     <li>{@code db.transaction.conflicts}: attempts failed on a write-write conflict.</li>
+ *     <li>{@code db.transaction.retry_us}: time from the first to the last attempt, spent in failed attempts, their
+ *     rollback and the backoff before retrying.</li>
+ *     <li>{@code db.transaction.commit_us} and {@code db.transaction.rollback_us}: time spent committing and rolling
+ *     back attempts.</li>
+ * </ul>
+ * The key-value operations of the attempts of a traced transaction are traced under the span of their attempt. Every
+ * transaction is recorded into the {@link TransactionMeters}, traced or not.
+ */
+public class TransactionTrace {
+
+    private final AbstractSpan span;
+    private final ContextSnapshot snapshot;
+    private final long startNanos;
+    private final AtomicInteger attempts = new AtomicInteger();
+    private final AtomicInteger conflicts = new AtomicInteger();
+    private final AtomicLong commitNanos = new AtomicLong();
+    private final AtomicLong rollbackNanos = new AtomicLong();
+    private volatile long firstAttemptNanos;
+    private volatile long lastAttemptNanos;
+    private volatile String outcome = TransactionMeters.COMMITTED;
+    private volatile String peer;
+
+    /**
+     * @param span the local span of the transaction, active on the calling thread, or null if not traced
+     */
+    public TransactionTrace(AbstractSpan span) {
+        this.span = span;
+        this.snapshot = span != null ? ContextManager.capture() : null;
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * @param attemptContext a {@code TransactionAttemptContext}
+     * @return the trace of the transaction the attempt belongs to, or null if it is not bound to one
+     */
+    public static TransactionTrace of(EnhancedInstance attemptContext) {
+        Object coreContext = attemptContext.getSkyWalkingDynamicField();
+        Object trace = coreContext instanceof EnhancedInstance ? ((EnhancedInstance) coreContext).getSkyWalkingDynamicField() : null;
+        return trace instanceof TransactionTrace ? (TransactionTrace) trace : null;
+    }
+
+    public boolean isTraced() {
+        return span != null;
+    }
+
+    /**
+     * The peer of an operation of the transaction. Replace and remove only get the result of an earlier read, so the
+     * peer of the last collection operated on is kept for them.
+     *
+     * @param target the collection, or the result of an earlier read, the operation is run on
+     */
+    public String peerOf(Object target) {
+        if (target instanceof EnhancedInstance) {
+            peer = CouchbaseInstanceState.peerOf((EnhancedInstance) target);
+        }
+        return peer;
+    }
+
+    /**
+     * Starts the span of an attempt, a child of the span of the transaction even if the SDK runs the attempt on
+     * another thread.
+     */
+    void attemptStarted() {
+        long now = System.nanoTime();
+        int attempt = attempts.incrementAndGet();
+        if (attempt == 1) {
+            firstAttemptNanos = now;
+        }
+        lastAttemptNanos = now;
+        if (CouchbasePluginConfig.Plugin.Couchbase.OPERATION_METRICS) {
+            TransactionMeters.recordAttempt();
+        }
+        if (span != null) {
+            AbstractSpan attemptSpan = ContextManager.createLocalSpan("Couchbase/Transactions/attempt");
+            ContextManager.continued(snapshot);
+            attemptSpan.tag(CouchbaseTags.TRANSACTION_ATTEMPT, Integer.toString(attempt));
+        }
+    }
+
+    void attemptFailed(Throwable t) {
+        Throwable cause = t instanceof TransactionOperationFailedException && t.getCause() != null ? t.getCause() : t;
+        ErrorClass errorClass = ErrorClass.classify(cause);
+        boolean metrics = CouchbasePluginConfig.Plugin.Couchbase.OPERATION_METRICS;
+        if (errorClass == ErrorClass.FAIL_WRITE_WRITE_CONFLICT) {
+            conflicts.incrementAndGet();
+            if (metrics) {
+                TransactionMeters.recordConflict();
+            }
+        } else if (errorClass == ErrorClass.FAIL_EXPIRY || cause instanceof AttemptExpiredException) {
+            if (metrics) {
+                TransactionMeters.recordExpiry();
+            }
+        }
+        if (span != null) {
+            ContextManager.activeSpan().log(t);
+        }
+    }
+
+    void attemptFinished() {
+        if (span != null) {
+            ContextManager.stopSpan();
+        }
+    }
+
+    /**
+     * Times the subscription of a commit or rollback of an attempt until it terminates.
+     */
+    public <T> Mono<T> timePhase(Mono<T> phase, boolean commit) {
+        return Mono.defer(() -> {
+            long phaseStartNanos = System.nanoTime();
+            return phase.doFinally(signal -> {
+                long elapsed = System.nanoTime() - phaseStartNanos;
+                (commit ? commitNanos : rollbackNanos).addAndGet(elapsed);
+                if (CouchbasePluginConfig.Plugin.Couchbase.OPERATION_METRICS) {
+                    if (commit) {
+                        TransactionMeters.recordCommit(elapsed);
+                    } else {
+                        TransactionMeters.recordRollback(elapsed);
+                    }
+                }
+            });
+        });
+    }
+
+    /**
+     * Records the failure of the whole transaction, once all its attempts are done.
+     */
+    public void failed(Throwable t) {
+        if (t instanceof TransactionExpiredException) {
+            outcome = TransactionMeters.EXPIRED;
+        } else if (t instanceof TransactionCommitAmbiguousException) {
+            outcome = TransactionMeters.AMBIGUOUS;
+        } else {
+            outcome = TransactionMeters.FAILED;
+        }
+        if (span != null) {
+            span.log(t);
+        }
+    }
+
+    /**
+     * Records the transaction and tags its span, which the caller stops.
+     */
+    public void finish() {
+        if (CouchbasePluginConfig.Plugin.Couchbase.OPERATION_METRICS) {
+            TransactionMeters.recordTransaction(outcome, System.nanoTime() - startNanos);
+        }
+        if (span == null) {
+            return;
+        }
+        span.tag(CouchbaseTags.TRANSACTION_OUTCOME, outcome);
+        span.tag(CouchbaseTags.TRANSACTION_ATTEMPTS, Integer.toString(attempts.get()));
+        span.tag(CouchbaseTags.TRANSACTION_CONFLICTS, Integer.toString(conflicts.get()));
+        if (attempts.get() > 1) {
+            span.tag(CouchbaseTags.TRANSACTION_RETRY_US, Long.toString(TimeUnit.NANOSECONDS.toMicros(lastAttemptNanos - firstAttemptNanos)));
+        }
+        span.tag(CouchbaseTags.TRANSACTION_COMMIT_US, Long.toString(TimeUnit.NANOSECONDS.toMicros(commitNanos.get())));
+        long rollback = rollbackNanos.get();
+        if (rollback > 0) {
+            span.tag(CouchbaseTags.TRANSACTION_ROLLBACK_US, Long.toString(TimeUnit.NANOSECONDS.toMicros(rollback)));
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.skywalking.apm.plugin.couchbase.v76.support;
+
+import org.apache.skywalking.apm.agent.core.context.ContextManager;
+import org.apache.skywalking.apm.agent.core.context.ContextSnapshot;
+import org.apache.skywalking.apm.agent.core.context.trace.AbstractSpan;
+
+import java.util.function.BiConsumer;
+
+/**
+ * Records the failure of an operation that was not sampled, so that errors are always traced. Used as a
+ * {@code whenComplete} callback it only records the latency of successful operations into their
+ * {@link OperationMetrics}.
+ */
+public class UnsampledErrorRecorder implements BiConsumer<Object, Throwable> {
+
+    private final OperationDescriptor descriptor;
+    private final String peer;
+    private final String formattedDocId;
+    private final String statement;
+    private final ContextSnapshot snapshot;
+    private final OperationMetrics metrics;
+    private final long startNanos;
+
+    /**
+     * @param metrics the metrics of the operation, or null if not recorded
+     */
+    public UnsampledErrorRecorder(OperationDescriptor descriptor, String peer, String formattedDocId,
+        ContextSnapshot snapshot, OperationMetrics metrics, long startNanos) {
+        this(descriptor, peer, formattedDocId, null, snapshot, metrics, startNanos);
+    }
+
+    private UnsampledErrorRecorder(OperationDescriptor descriptor, String peer, String formattedDocId, String statement,
+        ContextSnapshot snapshot, OperationMetrics metrics, long startNanos) {
+        this.descriptor = descriptor;
+        this.peer = peer;
+        this.formattedDocId = formattedDocId;
+        this.statement = statement;
+        this.snapshot = snapshot;
+        this.metrics = metrics;
+        this.startNanos = startNanos;
+    }
+
+    /**
+     * Recorder for a query, analytics or search call, whose error span is tagged with the statement instead of a
+     * document id.
+     */
+    public static UnsampledErrorRecorder forQuery(OperationDescriptor descriptor, String peer, String statement,
+        ContextSnapshot snapshot, OperationMetrics metrics, long startNanos) {
+        return new UnsampledErrorRecorder(descriptor, peer, null, statement, snapshot, metrics, startNanos);
+    }
+
+    @Override
+    public void accept(Object result, Throwable throwable) {
+        if (metrics != null) {
+            metrics.record(System.nanoTime() - startNanos, throwable != null);
+        }
+        if (throwable == null) {
+            return;
+        }
+        if (statement != null) {
+            recordQuery(descriptor, peer, statement, snapshot, CouchbaseAsyncSpanFinisher.unwrap(throwable));
+        } else {
+            record(descriptor, peer, formattedDocId, snapshot, CouchbaseAsyncSpanFinisher.unwrap(throwable));
+        }
+    }
+
+    public static void record(OperationDescriptor descriptor, String peer, String formattedDocId,
+        ContextSnapshot snapshot, Throwable throwable) {
+        AbstractSpan span = ContextManager.createExitSpan(descriptor.getOperationName(), peer);
+        if (snapshot != null) {
+            ContextManager.continued(snapshot);
+        }
+        descriptor.tagStatic(span);
+        CouchbaseSpanHelper.tagFormattedDocumentId(span, formattedDocId);
+        CouchbaseSpanHelper.logError(span, throwable);
+        ContextManager.stopSpan();
+    }
+
+    public static void recordQuery(OperationDescriptor descriptor, String peer, String statement,
+        ContextSnapshot snapshot, Throwable throwable) {
+        AbstractSpan span = ContextManager.createExitSpan(descriptor.getOperationName(), peer);
+        if (snapshot != null) {
+            ContextManager.continued(snapshot);
+        }
+        CouchbaseSpanHelper.tagServiceStatement(span, descriptor, statement);
+        CouchbaseSpanHelper.logError(span, throwable);
+        ContextManager.stopSpan();
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.skywalking.apm.plugin.couchbase.v76;
+
+import com.couchbase.client.java.AsyncCollection;
+import com.couchbase.client.java.Cluster;
+import com.couchbase.client.java.Collection;
+import org.apache.skywalking.apm.agent.core.boot.ServiceManager;
+import org.apache.skywalking.apm.agent.core.conf.Config;
+import org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance.EnhancedInstance;
+import org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance.InstanceMethodsAroundInterceptor;
+import org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance.MethodInterceptResult;
+import org.apache.skywalking.apm.plugin.couchbase.v76.interceptor.AsyncCollectionCrudInterceptor;
+import org.apache.skywalking.apm.plugin.couchbase.v76.interceptor.ClusterQueryInterceptor;
+import org.apache.skywalking.apm.plugin.couchbase.v76.interceptor.CollectionCrudInterceptor;
+import org.apache.skywalking.apm.plugin.couchbase.v76.support.CouchbaseSpanHelper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Overhead of the interceptors on the path of a single operation, from {@code beforeMethod} to {@code afterMethod},
+ * against a baseline doing the same work without the plugin. The agent services are booted without a reachable
+ * backend, so spans are created, finished and their segments dropped, as on an agent that cannot report. Run {@link
+ * #main(String[])} to measure ns/op, and bytes allocated per op through the GC profiler
+ * ({@code gc.alloc.rate.norm}).
+ * <p>
+ * The interceptors are driven with {@link StubInstance}s, plain enhanced instances with a field, so that nothing but
+ * the interceptors is measured. The SDK classes cannot be subclassed outside their package; the keyspace, sampling
+ * scope and peer of an instance are resolved on its first call and cached in its dynamic field, so they are off the
+ * measured path either way, the stubs falling back to a scope of their own and no peer.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CouchbaseInterceptorBenchmark {
+
+    private static final String DOCUMENT_ID = "airline_10226";
+
+    private static final String STATEMENT = "SELECT a.name, a.callsign, r.sourceairport, r.destinationairport FROM `travel-sample`.inventory.airline a "
+        + "JOIN `travel-sample`.inventory.route r ON r.airlineid = META(a).id WHERE a.country = 'United States' AND r.stops = 0 LIMIT 10";
+
+    private static final String LONG_STATEMENT;
+
+    static {
+        StringBuilder statement = new StringBuilder("SELECT META(h).id FROM `travel-sample`.inventory.hotel h WHERE h.city IN [");
+        for (int i = 0; i < 200; i++) {
+            statement.append(i == 0 ? "" : ", ").append("'city-").append(i).append('\'');
+        }
+        LONG_STATEMENT = statement.append(']').toString();
+    }
+
+    private final CollectionCrudInterceptor collectionInterceptor = new CollectionCrudInterceptor();
+    private final AsyncCollectionCrudInterceptor asyncCollectionInterceptor = new AsyncCollectionCrudInterceptor();
+    private final ClusterQueryInterceptor clusterQueryInterceptor = new ClusterQueryInterceptor();
+    private final NoopInterceptor noopInterceptor = new NoopInterceptor();
+
+    private final EnhancedInstance collection = new StubInstance();
+    private final EnhancedInstance asyncCollection = new StubInstance();
+    private final EnhancedInstance cluster = new StubInstance();
+
+    private final Object result = new Object();
+    private final CompletableFuture<Object> completedFuture = CompletableFuture.completedFuture(result);
+
+    private Method collectionGet;
+    private Method asyncCollectionGet;
+    private Method clusterQuery;
+
+    @Setup
+    public void setUp() throws NoSuchMethodException {
+        Config.Agent.SERVICE_NAME = "couchbase-benchmark";
+        ServiceManager.INSTANCE.boot();
+        collectionGet = Collection.class.getMethod("get", String.class);
+        asyncCollectionGet = AsyncCollection.class.getMethod("get", String.class);
+        clusterQuery = Cluster.class.getMethod("query", String.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        ServiceManager.INSTANCE.shutdown();
+    }
+
+    /**
+     * The same call shape as {@link #collectionGet()}, through an interceptor doing nothing.
+     */
+    @Benchmark
+    public Object baseline() {
+        Object[] arguments = new Object[] {DOCUMENT_ID};
+        Class<?>[] types = new Class<?>[] {String.class};
+        noopInterceptor.beforeMethod(collection, collectionGet, arguments, types, new MethodInterceptResult());
+        return noopInterceptor.afterMethod(collection, collectionGet, arguments, types, result);
+    }
+
+    @Benchmark
+    public Object collectionGet() {
+        Object[] arguments = new Object[] {DOCUMENT_ID};
+        Class<?>[] types = new Class<?>[] {String.class};
+        collectionInterceptor.beforeMethod(collection, collectionGet, arguments, types, new MethodInterceptResult());
+        return collectionInterceptor.afterMethod(collection, collectionGet, arguments, types, result);
+    }
+
+    @Benchmark
+    public Object asyncCollectionGet() {
+        Object[] arguments = new Object[] {DOCUMENT_ID};
+        Class<?>[] types = new Class<?>[] {String.class};
+        asyncCollectionInterceptor.beforeMethod(asyncCollection, asyncCollectionGet, arguments, types, new MethodInterceptResult());
+        return asyncCollectionInterceptor.afterMethod(asyncCollection, asyncCollectionGet, arguments, types, completedFuture);
+    }
+
+    @Benchmark
+    public Object clusterQuery() {
+        Object[] arguments = new Object[] {STATEMENT};
+        Class<?>[] types = new Class<?>[] {String.class};
+        clusterQueryInterceptor.beforeMethod(cluster, clusterQuery, arguments, types, new MethodInterceptResult());
+        return clusterQueryInterceptor.afterMethod(cluster, clusterQuery, arguments, types, result);
+    }
+
+    @Benchmark
+    public String truncateLongStatement() {
+        return CouchbaseSpanHelper.truncateStatement(LONG_STATEMENT);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder().include(CouchbaseInterceptorBenchmark.class.getSimpleName())
+                                          .addProfiler(GCProfiler.class)
+                                          .build();
+        new Runner(opt).run();
+    }
+
+    /**
+     * Stands for an enhanced SDK instance, its dynamic field a plain field like the one the agent adds.
+     */
+    private static final class StubInstance implements EnhancedInstance {
+        private Object dynamicField;
+
+        @Override
+        public Object getSkyWalkingDynamicField() {
+            return dynamicField;
+        }
+
+        @Override
+        public void setSkyWalkingDynamicField(Object value) {
+            this.dynamicField = value;
+        }
+    }
+
+    private static final class NoopInterceptor implements InstanceMethodsAroundInterceptor {
+        @Override
+        public void beforeMethod(EnhancedInstance objInst, Method method, Object[] allArguments, Class<?>[] argumentsTypes, MethodInterceptResult result) {
+        }
+
+        @Override
+        public Object afterMethod(EnhancedInstance objInst, Method method, Object[] allArguments, Class<?>[] argumentsTypes, Object ret) {
+            return ret;
+        }
+
+        @Override
+        public void handleMethodException(EnhancedInstance objInst, Method method, Object[] allArguments, Class<?>[] argumentsTypes, Throwable t) {
+        }
+    }
+}
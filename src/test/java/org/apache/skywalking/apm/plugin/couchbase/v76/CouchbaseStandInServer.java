@@ -0,0 +1,330 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.skywalking.apm.plugin.couchbase.v76;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A single-node Couchbase stand-in listening on localhost, enough for the SDK to bootstrap a bucket and run key-value
+ * gets and upserts on its default collection, and N1QL queries. The key-value side speaks the memcached binary
+ * protocol: HELLO, the error map, SASL PLAIN, bucket selection and the cluster config are answered so the SDK
+ * completes its handshake, documents live in a map. The query side answers every statement with the same single row.
+ * It stands in for a cluster in {@link CouchbaseThroughputHarness}, and is not meant to be correct beyond that.
+ */
+public class CouchbaseStandInServer implements Closeable {
+
+    private static final int HEADER_SIZE = 24;
+
+    private static final byte MAGIC_REQUEST = (byte) 0x80;
+    private static final byte MAGIC_RESPONSE = (byte) 0x81;
+
+    private static final byte OPCODE_GET = 0x00;
+    private static final byte OPCODE_SET = 0x01;
+    private static final byte OPCODE_NOOP = 0x0a;
+    private static final byte OPCODE_HELLO = 0x1f;
+    private static final byte OPCODE_SASL_LIST_MECHS = 0x20;
+    private static final byte OPCODE_SASL_AUTH = 0x21;
+    private static final byte OPCODE_SELECT_BUCKET = (byte) 0x89;
+    private static final byte OPCODE_GET_CLUSTER_CONFIG = (byte) 0xb5;
+    private static final byte OPCODE_GET_ERROR_MAP = (byte) 0xfe;
+
+    private static final short STATUS_SUCCESS = 0x00;
+    private static final short STATUS_NOT_FOUND = 0x01;
+    private static final short STATUS_UNKNOWN_COMMAND = 0x81;
+
+    /**
+     * TCPNODELAY, XERROR and SELECT_BUCKET, the only HELLO features acknowledged.
+     */
+    private static final short[] FEATURES = {0x03, 0x07, 0x08};
+
+    private static final byte[] ERROR_MAP = "{\"version\":2,\"revision\":1,\"errors\":{}}".getBytes(StandardCharsets.UTF_8);
+
+    private static final String QUERY_ROW = "{\"id\":1,\"name\":\"stand-in\"}";
+
+    static {
+        // without it the query responses wait for delayed acknowledgements, tens of milliseconds each
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private final String bucket;
+    private final ServerSocket kvSocket;
+    private final HttpServer queryServer;
+    private final ExecutorService connections = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "CouchbaseStandIn");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ConcurrentMap<String, Document> documents = new ConcurrentHashMap<>();
+    private final AtomicLong cas = new AtomicLong();
+    private final byte[] config;
+
+    private final AtomicLong failures = new AtomicLong();
+    private volatile IOException lastFailure;
+    private volatile boolean closed;
+
+    public CouchbaseStandInServer(String bucket) throws IOException {
+        this.bucket = bucket;
+        InetAddress loopback = InetAddress.getLoopbackAddress();
+        this.kvSocket = new ServerSocket(0, 128, loopback);
+        this.queryServer = HttpServer.create(new InetSocketAddress(loopback, 0), 128);
+        this.queryServer.createContext("/query/service", this::query);
+        this.queryServer.setExecutor(connections);
+        this.config = config(loopback.getHostAddress(), kvSocket.getLocalPort(), queryServer.getAddress().getPort());
+    }
+
+    public CouchbaseStandInServer start() {
+        queryServer.start();
+        connections.execute(() -> {
+            while (!closed) {
+                try {
+                    Socket socket = kvSocket.accept();
+                    socket.setTcpNoDelay(true);
+                    connections.execute(() -> serve(socket));
+                } catch (IOException e) {
+                    failed(e);
+                }
+            }
+        });
+        return this;
+    }
+
+    /**
+     * The connection string the SDK bootstraps from, the key-value port of the stand-in as seed.
+     */
+    public String connectionString() {
+        return "couchbase://" + kvSocket.getInetAddress().getHostAddress() + ":" + kvSocket.getLocalPort();
+    }
+
+    public String bucket() {
+        return bucket;
+    }
+
+    /**
+     * @return the number of connections that failed while the stand-in was open
+     */
+    public long failures() {
+        return failures.get();
+    }
+
+    /**
+     * @return the last connection failure, null if none
+     */
+    public IOException lastFailure() {
+        return lastFailure;
+    }
+
+    private void failed(IOException e) {
+        if (!closed) {
+            lastFailure = e;
+            failures.incrementAndGet();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        queryServer.stop(0);
+        kvSocket.close();
+        connections.shutdownNow();
+    }
+
+    private byte[] config(String host, int kvPort, int queryPort) {
+        StringBuilder vBucketMap = new StringBuilder();
+        for (int i = 0; i < 1024; i++) {
+            vBucketMap.append(i == 0 ? "[0]" : ",[0]");
+        }
+        String json = "{\"rev\":1,\"name\":\"" + bucket + "\",\"uuid\":\"00000000000000000000000000000001\","
+            + "\"nodeLocator\":\"vbucket\",\"bucketCapabilities\":[\"couchapi\",\"xattr\",\"dcp\",\"cbhello\",\"touch\","
+            + "\"cccp\",\"xdcrCheckpointing\",\"nodesExt\"],"
+            + "\"nodes\":[{\"couchApiBase\":\"\",\"hostname\":\"" + host + ":8091\",\"ports\":{\"direct\":" + kvPort + "}}],"
+            + "\"nodesExt\":[{\"services\":{\"mgmt\":8091,\"kv\":" + kvPort + ",\"n1ql\":" + queryPort + "},\"thisNode\":true,"
+            + "\"hostname\":\"" + host + "\"}],"
+            + "\"clusterCapabilitiesVer\":[1,0],\"clusterCapabilities\":{\"n1ql\":[\"enhancedPreparedStatements\"]},"
+            + "\"vBucketServerMap\":{\"hashAlgorithm\":\"CRC\",\"numReplicas\":0,\"serverList\":[\"" + host + ":" + kvPort
+            + "\"],\"vBucketMap\":[" + vBucketMap + "]}}";
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void serve(Socket socket) {
+        try (Socket s = socket) {
+            InputStream raw = new BufferedInputStream(s.getInputStream());
+            DataInputStream in = new DataInputStream(raw);
+            OutputStream out = new BufferedOutputStream(s.getOutputStream());
+            byte[] header = new byte[HEADER_SIZE];
+            while (!closed) {
+                in.readFully(header);
+                ByteBuffer request = ByteBuffer.wrap(header);
+                if (request.get(0) != MAGIC_REQUEST) {
+                    return;
+                }
+                byte opcode = request.get(1);
+                int keyLength = request.getShort(2) & 0xffff;
+                int extrasLength = request.get(4) & 0xff;
+                byte[] body = new byte[request.getInt(8)];
+                in.readFully(body);
+                int opaque = request.getInt(12);
+                respond(out, opcode, opaque, extrasLength, keyLength, body);
+                if (raw.available() == 0) {
+                    out.flush();
+                }
+            }
+        } catch (EOFException | SocketException ignored) {
+            // the SDK closed the connection
+        } catch (IOException e) {
+            failed(e);
+        }
+    }
+
+    private void respond(OutputStream out, byte opcode, int opaque, int extrasLength, int keyLength,
+                         byte[] body) throws IOException {
+        switch (opcode) {
+            case OPCODE_HELLO:
+                ByteBuffer requested = ByteBuffer.wrap(body, keyLength, body.length - keyLength);
+                ByteBuffer acknowledged = ByteBuffer.allocate(body.length - keyLength);
+                while (requested.remaining() >= 2) {
+                    short feature = requested.getShort();
+                    for (short supported : FEATURES) {
+                        if (feature == supported) {
+                            acknowledged.putShort(feature);
+                        }
+                    }
+                }
+                write(out, opcode, STATUS_SUCCESS, opaque, 0, null, 0, copyOf(acknowledged));
+                break;
+            case OPCODE_GET_ERROR_MAP:
+                write(out, opcode, STATUS_SUCCESS, opaque, 0, null, 0, ERROR_MAP);
+                break;
+            case OPCODE_SASL_LIST_MECHS:
+                write(out, opcode, STATUS_SUCCESS, opaque, 0, null, 0, "PLAIN".getBytes(StandardCharsets.UTF_8));
+                break;
+            case OPCODE_SASL_AUTH:
+            case OPCODE_SELECT_BUCKET:
+            case OPCODE_NOOP:
+                write(out, opcode, STATUS_SUCCESS, opaque, 0, null, 0, new byte[0]);
+                break;
+            case OPCODE_GET_CLUSTER_CONFIG:
+                write(out, opcode, STATUS_SUCCESS, opaque, 0, null, 0x01, config);
+                break;
+            case OPCODE_GET:
+                Document document = documents.get(key(body, extrasLength, keyLength));
+                if (document == null) {
+                    write(out, opcode, STATUS_NOT_FOUND, opaque, 0, null, 0, new byte[0]);
+                } else {
+                    byte[] flags = ByteBuffer.allocate(4).putInt(document.flags).array();
+                    write(out, opcode, STATUS_SUCCESS, opaque, document.cas, flags, 0, document.content);
+                }
+                break;
+            case OPCODE_SET:
+                int flags = extrasLength >= 4 ? ByteBuffer.wrap(body).getInt() : 0;
+                int valueOffset = extrasLength + keyLength;
+                byte[] content = new byte[body.length - valueOffset];
+                System.arraycopy(body, valueOffset, content, 0, content.length);
+                long documentCas = cas.incrementAndGet();
+                documents.put(key(body, extrasLength, keyLength), new Document(content, flags, documentCas));
+                write(out, opcode, STATUS_SUCCESS, opaque, documentCas, null, 0, new byte[0]);
+                break;
+            default:
+                write(out, opcode, STATUS_UNKNOWN_COMMAND, opaque, 0, null, 0, new byte[0]);
+        }
+    }
+
+    private static String key(byte[] body, int extrasLength, int keyLength) {
+        return new String(body, extrasLength, keyLength, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] copyOf(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.position()];
+        buffer.flip();
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private static void write(OutputStream out, byte opcode, short status, int opaque, long cas, byte[] extras,
+                              int datatype, byte[] value) throws IOException {
+        int extrasLength = extras == null ? 0 : extras.length;
+        ByteBuffer response = ByteBuffer.allocate(HEADER_SIZE + extrasLength + value.length);
+        response.put(MAGIC_RESPONSE)
+                .put(opcode)
+                .putShort((short) 0)
+                .put((byte) extrasLength)
+                .put((byte) datatype)
+                .putShort(status)
+                .putInt(extrasLength + value.length)
+                .putInt(opaque)
+                .putLong(cas);
+        if (extras != null) {
+            response.put(extras);
+        }
+        response.put(value);
+        out.write(response.array());
+    }
+
+    private void query(HttpExchange exchange) throws IOException {
+        try {
+            InputStream request = exchange.getRequestBody();
+            byte[] drain = new byte[4096];
+            while (request.read(drain) != -1) {
+                // the statement does not change the answer
+            }
+            byte[] response = ("{\"requestID\":\"" + cas.incrementAndGet() + "\",\"signature\":{\"*\":\"*\"},\"results\":["
+                + QUERY_ROW + "],\"status\":\"success\",\"metrics\":{\"elapsedTime\":"
+                + "\"100us\",\"executionTime\":\"90us\",\"resultCount\":1,\"resultSize\":" + QUERY_ROW.length() + "}}")
+                .getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, response.length);
+            exchange.getResponseBody().write(response);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static class Document {
+        private final byte[] content;
+        private final int flags;
+        private final long cas;
+
+        Document(byte[] content, int flags, long cas) {
+            this.content = content;
+            this.flags = flags;
+            this.cas = cas;
+        }
+    }
+}
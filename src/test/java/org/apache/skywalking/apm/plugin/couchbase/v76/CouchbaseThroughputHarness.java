@@ -0,0 +1,290 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.skywalking.apm.plugin.couchbase.v76;
+
+import com.couchbase.client.core.env.PasswordAuthenticator;
+import com.couchbase.client.java.AsyncCollection;
+import com.couchbase.client.java.Cluster;
+import com.couchbase.client.java.ClusterOptions;
+import com.couchbase.client.java.Collection;
+import com.couchbase.client.java.ReactiveCollection;
+import com.couchbase.client.java.json.JsonObject;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sustained load against a {@link CouchbaseStandInServer}, through the real SDK and its threading, reporting ops/sec,
+ * p50/p99 latency and allocation rate per workload. Run it once as is and once with the agent ({@code
+ * -javaagent:skywalking-agent.jar} with this plugin in its {@code plugins} directory), the difference of the two
+ * reports being the overhead of the plugin. Tuned with system properties:
+ * <ul>
+ * <li>{@code harness.workloads}: among {@code blocking,async,reactive,query}, all by default.</li>
+ * <li>{@code harness.seconds}: measured duration of each workload, 30 by default, after {@code harness.warmup}
+ * seconds of warm up, 10 by default.</li>
+ * <li>{@code harness.threads}: callers of the blocking and query workloads, 8 by default.</li>
+ * <li>{@code harness.concurrency}: operations in flight in the async and reactive workloads, 64 by default.</li>
+ * <li>{@code harness.documents}: documents loaded and read at random, 10000 by default.</li>
+ * </ul>
+ * One operation out of ten is an upsert, the others are gets. The allocation rate sums the bytes allocated by every
+ * live thread, the SDK's included.
+ */
+public class CouchbaseThroughputHarness {
+
+    private static final String ENHANCED_INSTANCE = "org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance.EnhancedInstance";
+
+    private static final String STATEMENT = "SELECT h.name FROM `travel-sample`.inventory.hotel h WHERE h.city = 'Paris' LIMIT 1";
+
+    private static final int UPSERT_RATIO = 10;
+
+    private final int threads = Integer.getInteger("harness.threads", 8);
+    private final int concurrency = Integer.getInteger("harness.concurrency", 64);
+    private final int documents = Integer.getInteger("harness.documents", 10000);
+    private final Duration warmup = Duration.ofSeconds(Integer.getInteger("harness.warmup", 10));
+    private final Duration measurement = Duration.ofSeconds(Integer.getInteger("harness.seconds", 30));
+
+    private final Cluster cluster;
+    private final Collection collection;
+    private final ThreadPoolExecutor callers = new ThreadPoolExecutor(
+        threads, threads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
+    private final JsonObject content = JsonObject.create().put("name", "stand-in").put("country", "France");
+
+    private CouchbaseThroughputHarness(Cluster cluster, Collection collection) {
+        this.cluster = cluster;
+        this.collection = collection;
+        // started ahead, so that their allocations are accounted from the beginning of a measurement
+        this.callers.prestartAllCoreThreads();
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<String> workloads = Arrays.asList(System.getProperty("harness.workloads", "blocking,async,reactive,query")
+                                                     .split(","));
+        try (CouchbaseStandInServer server = new CouchbaseStandInServer("stand-in").start()) {
+            Cluster cluster = Cluster.connect(
+                server.connectionString(),
+                ClusterOptions.clusterOptions(PasswordAuthenticator.builder("Administrator", "password")
+                                                                   .onlyEnablePlainSaslMechanism()
+                                                                   .build())
+                              .environment(env -> env.ioConfig(io -> io.enableDnsSrv(false)))
+            );
+            try {
+                CouchbaseThroughputHarness harness = new CouchbaseThroughputHarness(
+                    cluster, cluster.bucket(server.bucket()).defaultCollection());
+                harness.load();
+                System.out.printf("plugin %s%n", isEnhanced(Collection.class) ? "active" : "inactive");
+                try {
+                    for (String workload : workloads) {
+                        harness.run(workload.trim());
+                    }
+                } finally {
+                    harness.callers.shutdown();
+                }
+            } finally {
+                cluster.disconnect();
+            }
+            if (server.failures() > 0) {
+                System.out.printf("stand-in failures %d, last: %s%n", server.failures(), server.lastFailure());
+            }
+        }
+    }
+
+    private static boolean isEnhanced(Class<?> type) {
+        for (Class<?> implemented : type.getInterfaces()) {
+            if (implemented.getName().equals(ENHANCED_INSTANCE)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void load() {
+        for (int i = 0; i < documents; i++) {
+            collection.upsert(id(i), content);
+        }
+    }
+
+    private void run(String workload) throws InterruptedException {
+        run(workload, warmup, new Recorder());
+        Recorder recorder = new Recorder();
+        long[] threadIds = ManagementFactory.getThreadMXBean().getAllThreadIds();
+        long allocatedBefore = allocatedBytes(threadIds);
+        long start = System.nanoTime();
+        run(workload, measurement, recorder);
+        long elapsed = System.nanoTime() - start;
+        long allocated = allocatedBytes(threadIds) - allocatedBefore;
+        recorder.report(workload, elapsed, allocated);
+    }
+
+    private void run(String workload, Duration duration, Recorder recorder) throws InterruptedException {
+        long deadline = System.nanoTime() + duration.toNanos();
+        switch (workload) {
+            case "blocking":
+                onThreads(deadline, () -> {
+                    long start = System.nanoTime();
+                    if (ThreadLocalRandom.current().nextInt(UPSERT_RATIO) == 0) {
+                        collection.upsert(randomId(), content);
+                    } else {
+                        collection.get(randomId());
+                    }
+                    recorder.record(start);
+                }, recorder);
+                break;
+            case "async":
+                async(collection.async(), deadline, recorder);
+                break;
+            case "reactive":
+                reactive(collection.reactive(), deadline, recorder);
+                break;
+            case "query":
+                onThreads(deadline, () -> {
+                    long start = System.nanoTime();
+                    cluster.query(STATEMENT).rowsAsObject();
+                    recorder.record(start);
+                }, recorder);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown workload " + workload);
+        }
+    }
+
+    private void onThreads(long deadline, Runnable operation, Recorder recorder) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int i = 0; i < threads; i++) {
+            callers.execute(() -> {
+                try {
+                    while (System.nanoTime() < deadline) {
+                        try {
+                            operation.run();
+                        } catch (RuntimeException e) {
+                            recorder.failed();
+                        }
+                    }
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+    }
+
+    private void async(AsyncCollection async, long deadline, Recorder recorder) throws InterruptedException {
+        Semaphore inFlight = new Semaphore(concurrency);
+        while (System.nanoTime() < deadline) {
+            inFlight.acquire();
+            long start = System.nanoTime();
+            (ThreadLocalRandom.current().nextInt(UPSERT_RATIO) == 0
+                ? async.upsert(randomId(), content)
+                : async.get(randomId())).whenComplete((result, error) -> {
+                    if (error == null) {
+                        recorder.record(start);
+                    } else {
+                        recorder.failed();
+                    }
+                    inFlight.release();
+                });
+        }
+        inFlight.acquire(concurrency);
+    }
+
+    private void reactive(ReactiveCollection reactive, long deadline, Recorder recorder) {
+        Flux.range(0, Integer.MAX_VALUE)
+            .takeWhile(i -> System.nanoTime() < deadline)
+            .flatMap(i -> {
+                long start = System.nanoTime();
+                return (i % UPSERT_RATIO == 0 ? reactive.upsert(randomId(), content) : reactive.get(randomId()))
+                    .doOnSuccess(result -> recorder.record(start))
+                    .onErrorResume(e -> {
+                        recorder.failed();
+                        return Mono.empty();
+                    });
+            }, concurrency)
+            .blockLast();
+    }
+
+    private String randomId() {
+        return id(ThreadLocalRandom.current().nextInt(documents));
+    }
+
+    private static String id(int i) {
+        return "doc-" + i;
+    }
+
+    private static long allocatedBytes(long[] threadIds) {
+        long[] allocated = ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+            .getThreadAllocatedBytes(threadIds);
+        long total = 0;
+        for (long bytes : allocated) {
+            total += Math.max(bytes, 0);
+        }
+        return total;
+    }
+
+    /**
+     * Counts the operations of a workload and keeps the latency of the first million of them.
+     */
+    private static class Recorder {
+        private static final int CAPACITY = 1 << 20;
+
+        private final long[] latencies = new long[CAPACITY];
+        private final AtomicInteger samples = new AtomicInteger();
+        private final AtomicLong operations = new AtomicLong();
+        private final AtomicLong errors = new AtomicLong();
+
+        void record(long start) {
+            long latency = System.nanoTime() - start;
+            operations.incrementAndGet();
+            int index = samples.getAndIncrement();
+            if (index < CAPACITY) {
+                latencies[index] = latency;
+            }
+        }
+
+        void failed() {
+            errors.incrementAndGet();
+        }
+
+        void report(String workload, long elapsedNanos, long allocatedBytes) {
+            long count = operations.get();
+            long[] sorted = Arrays.copyOf(latencies, Math.min(samples.get(), CAPACITY));
+            Arrays.sort(sorted);
+            double seconds = elapsedNanos / 1e9;
+            System.out.printf(
+                "%-9s %10.0f ops/s  p50 %7.1f us  p99 %7.1f us  alloc %8.1f MB/s %8d B/op  errors %d%n",
+                workload, count / seconds, percentile(sorted, 0.50) / 1e3, percentile(sorted, 0.99) / 1e3,
+                allocatedBytes / seconds / (1024 * 1024), count == 0 ? 0 : allocatedBytes / count, errors.get()
+            );
+        }
+
+        private static long percentile(long[] sorted, double percentile) {
+            return sorted.length == 0 ? 0 : sorted[(int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1)];
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package org.apache.skywalking.apm.plugin.couchbase.v76.support;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AggregatedOperationTest {
+
+    @Test
+    public void drainedCallsDoNotCloseAnOpenWindow() {
+        RecordingSpan span = new RecordingSpan();
+        AggregatedOperation aggregate = new AggregatedOperation(span.span, System.nanoTime() + TimeUnit.HOURS.toNanos(1));
+        assertTrue(aggregate.tryJoin());
+        call(aggregate).accept(null, null);
+        assertFalse(aggregate.isClosed());
+        assertTrue("calls rejoin the same aggregate within the window", aggregate.tryJoin());
+        call(aggregate).accept(null, null);
+        assertFalse(aggregate.isClosed());
+        assertEquals(0, span.asyncFinishes);
+    }
+
+    @Test
+    public void expiredWindowClosesWithItsLastCall() {
+        RecordingSpan span = new RecordingSpan();
+        AggregatedOperation aggregate = new AggregatedOperation(span.span, System.nanoTime() - 1);
+        assertTrue(aggregate.tryJoin());
+        assertTrue(aggregate.tryJoin());
+        call(aggregate).accept(null, null);
+        assertFalse(aggregate.isClosed());
+        call(aggregate).accept(null, null);
+        assertTrue(aggregate.isClosed());
+        assertEquals(1, span.asyncFinishes);
+        assertEquals("2", span.tag(CouchbaseTags.DB_AGGREGATED_COUNT));
+        assertFalse("a closed aggregate cannot be rejoined", aggregate.tryJoin());
+    }
+
+    @Test
+    public void expiryWaitsForTheCallsInFlight() {
+        RecordingSpan span = new RecordingSpan();
+        long windowEndNanos = System.nanoTime() + TimeUnit.HOURS.toNanos(1);
+        AggregatedOperation aggregate = new AggregatedOperation(span.span, windowEndNanos);
+        assertTrue(aggregate.tryJoin());
+        assertFalse(aggregate.expire(windowEndNanos - 1));
+        assertFalse(aggregate.expire(windowEndNanos));
+        assertEquals(0, span.asyncFinishes);
+    }
+
+    @Test
+    public void idleWindowIsFinishedOnceOnExpiry() {
+        RecordingSpan span = new RecordingSpan();
+        long windowEndNanos = System.nanoTime() + TimeUnit.HOURS.toNanos(1);
+        AggregatedOperation aggregate = new AggregatedOperation(span.span, windowEndNanos);
+        assertTrue(aggregate.tryJoin());
+        call(aggregate).accept(null, null);
+        assertFalse(aggregate.expire(windowEndNanos - 1));
+        assertTrue(aggregate.expire(windowEndNanos));
+        assertTrue(aggregate.expire(windowEndNanos + 1));
+        assertEquals(1, span.asyncFinishes);
+        assertEquals("1", span.tag(CouchbaseTags.DB_AGGREGATED_COUNT));
+    }
+
+    private static AggregatedOperation.Call call(AggregatedOperation aggregate) {
+        return new AggregatedOperation.Call(aggregate, System.nanoTime(), null);
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package org.apache.skywalking.apm.plugin.couchbase.v76.support;
+
+import org.apache.skywalking.apm.plugin.couchbase.v76.CouchbasePluginConfig;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class CouchbaseMetersTest {
+
+    @After
+    public void restoreConfig() {
+        CouchbasePluginConfig.Plugin.Couchbase.OPERATION_METRICS = true;
+    }
+
+    @Test
+    public void clusterLevelCallsShareTheMetricsOfTheirOperation() {
+        OperationDescriptor query = Operations.descriptor("query");
+        assertSame(CouchbaseMeters.of(new Object(), query), CouchbaseMeters.of(new Object(), query));
+        assertNotSame(CouchbaseMeters.of(new Object(), query), CouchbaseMeters.of(new Object(), Operations.descriptor("get")));
+    }
+
+    @Test
+    public void instancesCacheTheSharedMetrics() {
+        OperationDescriptor query = Operations.descriptor("query");
+        StubInstance instance = new StubInstance();
+        OperationMetrics metrics = CouchbaseInstanceState.metricsOf(instance, query);
+        assertSame(metrics, CouchbaseInstanceState.metricsOf(instance, query));
+        assertSame(metrics, CouchbaseInstanceState.metricsOf(new StubInstance(), query));
+        assertSame(metrics, CouchbaseMeters.of(instance, query));
+    }
+
+    @Test
+    public void noMetricsWhenDisabled() {
+        CouchbasePluginConfig.Plugin.Couchbase.OPERATION_METRICS = false;
+        assertNull(CouchbaseInstanceState.metricsOf(new StubInstance(), Operations.descriptor("query")));
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.skywalking.apm.plugin.couchbase.v76.support;
+
+import org.apache.skywalking.apm.plugin.couchbase.v76.CouchbasePluginConfig;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class DocumentIdFormatterTest {
+
+    private final CouchbasePluginConfig.DocumentIdMode mode = CouchbasePluginConfig.Plugin.Couchbase.DOCUMENT_ID_MODE;
+
+    @After
+    public void restoreMode() {
+        CouchbasePluginConfig.Plugin.Couchbase.DOCUMENT_ID_MODE = mode;
+    }
+
+    @Test
+    public void patternReplacesSegmentsByTheirShape() {
+        assertEquals("airline_{n}", DocumentIdFormatter.pattern("airline_10226"));
+        assertEquals("order::{n}::{uuid}", DocumentIdFormatter.pattern("order::2026::123e4567-e89b-12d3-a456-426614174000"));
+        assertEquals("session:{hex}", DocumentIdFormatter.pattern("session:0123456789abcdef"));
+        assertEquals("user/{id}/cart", DocumentIdFormatter.pattern("user/u42x/cart"));
+        assertEquals("blob#{s}", DocumentIdFormatter.pattern("blob#abcdefghijklmnopqrstuvwxyzabcdefgh"));
+        assertEquals("profile|settings", DocumentIdFormatter.pattern("profile|settings"));
+    }
+
+    @Test
+    public void patternKeepsShortHexWordsAndSeparators() {
+        assertEquals("cafe.{n}", DocumentIdFormatter.pattern("cafe.7"));
+        assertEquals("::{n}:", DocumentIdFormatter.pattern("::1:"));
+    }
+
+    @Test
+    public void keysOfOneShapeShareTheLearnedPattern() {
+        assertSame(DocumentIdFormatter.pattern("hotel_123"), DocumentIdFormatter.pattern("hotel_456789"));
+    }
+
+    @Test
+    public void formatFollowsTheMode() {
+        CouchbasePluginConfig.Plugin.Couchbase.DOCUMENT_ID_MODE = CouchbasePluginConfig.DocumentIdMode.FULL;
+        assertEquals("airline_10226", DocumentIdFormatter.format("airline_10226"));
+
+        CouchbasePluginConfig.Plugin.Couchbase.DOCUMENT_ID_MODE = CouchbasePluginConfig.DocumentIdMode.PATTERN;
+        assertEquals("airline_{n}", DocumentIdFormatter.format("airline_10226"));
+
+        CouchbasePluginConfig.Plugin.Couchbase.DOCUMENT_ID_MODE = CouchbasePluginConfig.DocumentIdMode.OFF;
+        assertNull(DocumentIdFormatter.format("airline_10226"));
+        assertNull(DocumentIdFormatter.format(null));
+    }
+
+    @Test
+    public void hashIsStableAndHidesTheKey() {
+        CouchbasePluginConfig.Plugin.Couchbase.DOCUMENT_ID_MODE = CouchbasePluginConfig.DocumentIdMode.HASH;
+        String hash = DocumentIdFormatter.format("user::alice@example.com");
+        assertEquals(Fingerprint.of("user::alice@example.com"), hash);
+        assertEquals(hash, DocumentIdFormatter.format("user::alice@example.com"));
+        assertNotEquals(hash, DocumentIdFormatter.format("user::bob@example.com"));
+        assertEquals(-1, hash.indexOf("alice"));
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.skywalking.apm.plugin.couchbase.v76.support;
+
+import com.couchbase.client.core.error.AmbiguousTimeoutException;
+import com.couchbase.client.core.error.CasMismatchException;
+import com.couchbase.client.core.error.CouchbaseException;
+import com.couchbase.client.core.error.DocumentNotFoundException;
+import com.couchbase.client.core.error.ParsingFailureException;
+import com.couchbase.client.core.error.UnambiguousTimeoutException;
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ErrorCategoryTest {
+
+    @Test
+    public void noCategoryIsShadowedByAnEarlierOne() throws ReflectiveOperationException {
+        ErrorCategory[] categories = ErrorCategory.values();
+        for (int i = 0; i < categories.length; i++) {
+            for (Class<?> type : typesOf(categories[i])) {
+                for (int j = 0; j < i; j++) {
+                    for (Class<?> earlier : typesOf(categories[j])) {
+                        assertFalse(
+                            type.getName() + " of " + categories[i] + " is caught by " + categories[j],
+                            earlier.isAssignableFrom(type));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void mostSpecificCategoryWins() {
+        assertEquals(ErrorCategory.TIMEOUT_AMBIGUOUS, ErrorCategory.of(new AmbiguousTimeoutException("timeout", null)));
+        assertEquals(ErrorCategory.TIMEOUT_UNAMBIGUOUS, ErrorCategory.of(new UnambiguousTimeoutException("timeout", null)));
+        assertEquals(ErrorCategory.TIMEOUT, ErrorCategory.of(new TimeoutException()));
+        assertEquals(ErrorCategory.DOCUMENT_NOT_FOUND, ErrorCategory.of(new DocumentNotFoundException(null)));
+        assertEquals(ErrorCategory.CAS_MISMATCH, ErrorCategory.of(new CasMismatchException(null)));
+        assertEquals(ErrorCategory.QUERY, ErrorCategory.of(new ParsingFailureException(null)));
+        assertEquals(ErrorCategory.COUCHBASE, ErrorCategory.of(new CouchbaseException("failure")));
+    }
+
+    @Test
+    public void unknownFailuresAreOther() {
+        assertEquals(ErrorCategory.OTHER, ErrorCategory.of(new IllegalStateException()));
+        assertEquals(ErrorCategory.OTHER, ErrorCategory.of(null));
+        ErrorCategory[] categories = ErrorCategory.values();
+        assertEquals(ErrorCategory.OTHER, categories[categories.length - 1]);
+    }
+
+    @Test
+    public void timeoutsAreTimeouts() {
+        for (ErrorCategory category : ErrorCategory.values()) {
+            assertEquals(category.getName(), category.getName().startsWith("timeout"), category.isTimeout());
+        }
+        assertTrue(ErrorCategory.of(new AmbiguousTimeoutException("timeout", null)).isTimeout());
+    }
+
+    private static Class<?>[] typesOf(ErrorCategory category) throws ReflectiveOperationException {
+        Field types = ErrorCategory.class.getDeclaredField("types");
+        types.setAccessible(true);
+        return (Class<?>[]) types.get(category);
+    }
+}
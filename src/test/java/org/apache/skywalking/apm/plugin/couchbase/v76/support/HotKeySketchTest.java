@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.skywalking.apm.plugin.couchbase.v76.support;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HotKeySketchTest {
+
+    @Test
+    public void topIsHottestFirst() {
+        HotKeySketch sketch = new HotKeySketch(1024, 3);
+        add(sketch, "airline_10", 5);
+        add(sketch, "airline_20", 30);
+        add(sketch, "airline_30", 10);
+        for (int i = 0; i < 50; i++) {
+            sketch.add("route_" + i, 1);
+        }
+        List<HotKeySketch.HotKey> top = sketch.top();
+        assertEquals(3, top.size());
+        assertEquals("airline_20", top.get(0).key);
+        assertEquals("airline_30", top.get(1).key);
+        assertEquals("airline_10", top.get(2).key);
+        assertTrue(top.get(0).count >= 30);
+        assertEquals(95, sketch.total());
+    }
+
+    @Test
+    public void hotterKeyEvictsTheColdestCandidate() {
+        HotKeySketch sketch = new HotKeySketch(1024, 2);
+        add(sketch, "a", 10);
+        add(sketch, "b", 5);
+        add(sketch, "c", 20);
+        List<HotKeySketch.HotKey> top = sketch.top();
+        assertEquals(2, top.size());
+        assertEquals("c", top.get(0).key);
+        assertEquals(20, top.get(0).count);
+        assertEquals("a", top.get(1).key);
+        assertEquals(10, top.get(1).count);
+    }
+
+    @Test
+    public void colderKeyDoesNotEvict() {
+        HotKeySketch sketch = new HotKeySketch(1024, 2);
+        add(sketch, "a", 10);
+        add(sketch, "b", 8);
+        add(sketch, "c", 3);
+        List<HotKeySketch.HotKey> top = sketch.top();
+        assertEquals("a", top.get(0).key);
+        assertEquals("b", top.get(1).key);
+    }
+
+    @Test
+    public void weightsAreCounted() {
+        HotKeySketch sketch = new HotKeySketch(1024, 1);
+        sketch.add("sampled", 100);
+        sketch.add("sampled", 100);
+        assertEquals(200, sketch.top().get(0).count);
+        assertEquals(200, sketch.total());
+    }
+
+    @Test
+    public void estimatesNeverUnderCount() {
+        HotKeySketch sketch = new HotKeySketch(16, 64);
+        for (int i = 0; i < 64; i++) {
+            add(sketch, "key_" + i, i + 1);
+        }
+        for (HotKeySketch.HotKey hotKey : sketch.top()) {
+            int expected = Integer.parseInt(hotKey.key.substring("key_".length())) + 1;
+            assertTrue(hotKey.key + " estimated " + hotKey.count, hotKey.count >= expected);
+        }
+    }
+
+    @Test
+    public void keysSharingTheirHashCodeAreCountedApart() {
+        assertEquals("Aa".hashCode(), "BB".hashCode());
+        HotKeySketch sketch = new HotKeySketch(1024, 2);
+        add(sketch, "Aa", 100);
+        sketch.add("BB", 1);
+        List<HotKeySketch.HotKey> top = sketch.top();
+        assertEquals("Aa", top.get(0).key);
+        assertEquals(100, top.get(0).count);
+        assertEquals("BB", top.get(1).key);
+        assertEquals(1, top.get(1).count);
+    }
+
+    private static void add(HotKeySketch sketch, String key, int times) {
+        for (int i = 0; i < times; i++) {
+            sketch.add(key, 1);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.skywalking.apm.plugin.couchbase.v76.support;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyDistributionTest {
+
+    private static final int BUCKETS = 248;
+
+    @Test
+    public void smallValuesHaveTheirOwnBucket() {
+        for (int value = 0; value < 8; value++) {
+            assertEquals(value, LatencyDistribution.bucketOf(value));
+            assertEquals(value, LatencyDistribution.lowerBound(value));
+        }
+    }
+
+    @Test
+    public void bucketEdgesMatchLowerBounds() {
+        for (int bucket = 1; bucket < BUCKETS; bucket++) {
+            long lowerBound = LatencyDistribution.lowerBound(bucket);
+            assertEquals("lower bound of " + bucket, bucket, LatencyDistribution.bucketOf(lowerBound));
+            assertEquals("below the lower bound of " + bucket, bucket - 1, LatencyDistribution.bucketOf(lowerBound - 1));
+        }
+    }
+
+    @Test
+    public void fourBucketsPerPowerOfTwo() {
+        assertEquals(8, LatencyDistribution.bucketOf(8));
+        assertEquals(8, LatencyDistribution.bucketOf(9));
+        assertEquals(9, LatencyDistribution.bucketOf(10));
+        assertEquals(11, LatencyDistribution.bucketOf(15));
+        assertEquals(12, LatencyDistribution.bucketOf(16));
+        assertEquals(LatencyDistribution.bucketOf(1024) + 4, LatencyDistribution.bucketOf(2048));
+    }
+
+    @Test
+    public void largestValueFitsTheLastBucket() {
+        assertEquals(BUCKETS - 1, LatencyDistribution.bucketOf(Long.MAX_VALUE));
+        assertEquals(Long.MAX_VALUE, LatencyDistribution.lowerBound(BUCKETS));
+    }
+
+    @Test
+    public void percentilesAreWithinABucket() {
+        LatencyDistribution distribution = new LatencyDistribution();
+        for (long micros = 1; micros <= 1000; micros++) {
+            distribution.record(micros * 1000, 0, false);
+        }
+        assertPercentile(distribution, 0.5, 500_000);
+        assertPercentile(distribution, 0.99, 990_000);
+        assertEquals(1_000_000, distribution.percentileNanos(1));
+    }
+
+    @Test
+    public void countsErrorsBytesAndExtremes() {
+        LatencyDistribution distribution = new LatencyDistribution();
+        assertEquals(0, distribution.percentileNanos(0.5));
+        assertEquals(0, distribution.getMinNanos());
+        assertEquals(0, distribution.getMaxNanos());
+        distribution.record(300, 10, false);
+        distribution.record(-5, 0, true);
+        distribution.record(7000, 20, true);
+        assertEquals(3, distribution.getCount());
+        assertEquals(2, distribution.getErrors());
+        assertEquals(30, distribution.getTotalBytes());
+        assertEquals(0, distribution.getMinNanos());
+        assertEquals(7000, distribution.getMaxNanos());
+    }
+
+    // The estimate is the upper bound of the bucket of the exact value, within 25% above it
+    private static void assertPercentile(LatencyDistribution distribution, double quantile, long exact) {
+        long estimate = distribution.percentileNanos(quantile);
+        assertTrue(quantile + " estimated " + estimate, estimate >= exact && estimate <= exact * 5 / 4);
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package org.apache.skywalking.apm.plugin.couchbase.v76.support;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class OperationMetricsTest {
+
+    private static final List<Double> STEPS = NodeLatencyMeters.LATENCY_STEPS_US;
+
+    @Test
+    public void stepsStartAtZeroAndAscend() {
+        assertEquals(82, STEPS.size());
+        assertEquals(0d, STEPS.get(0), 0);
+        assertEquals(16d, STEPS.get(1), 0);
+        for (int step = 1; step < STEPS.size(); step++) {
+            assertTrue("step " + step, STEPS.get(step) > STEPS.get(step - 1));
+        }
+        assertEquals((double) (1L << 24), STEPS.get(STEPS.size() - 1), 0);
+    }
+
+    @Test
+    public void latenciesBelowTheFirstStepAreInTheZeroBucket() {
+        assertEquals(0, NodeLatencyMeters.stepIndex(0));
+        assertEquals(0, NodeLatencyMeters.stepIndex(TimeUnit.MICROSECONDS.toNanos(16) - 1));
+        assertEquals(1, NodeLatencyMeters.stepIndex(TimeUnit.MICROSECONDS.toNanos(16)));
+    }
+
+    @Test
+    public void stepEdgesMatchTheReportedSteps() {
+        for (int step = 2; step < STEPS.size(); step++) {
+            long edgeNanos = TimeUnit.MICROSECONDS.toNanos(STEPS.get(step).longValue());
+            assertEquals("edge of step " + step, step, NodeLatencyMeters.stepIndex(edgeNanos));
+            assertEquals("below the edge of step " + step, step - 1, NodeLatencyMeters.stepIndex(edgeNanos - 1000));
+        }
+    }
+
+    @Test
+    public void latenciesAboveTheLastStepAreInTheLastBucket() {
+        assertEquals(STEPS.size() - 1, NodeLatencyMeters.stepIndex(TimeUnit.SECONDS.toNanos(60)));
+        assertEquals(STEPS.size() - 1, NodeLatencyMeters.stepIndex(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void recordsCallsErrorsAndBuckets() {
+        OperationMetrics metrics = new OperationMetrics("couchbase_test", Collections.emptyList());
+        metrics.record(TimeUnit.MICROSECONDS.toNanos(5), false);
+        metrics.record(TimeUnit.MICROSECONDS.toNanos(16), true);
+        metrics.record(TimeUnit.MICROSECONDS.toNanos(19), false);
+        assertEquals(3, metrics.getCalls());
+        assertEquals(1, metrics.getErrors());
+        assertEquals(1, metrics.getBucketCount(0));
+        assertEquals(2, metrics.getBucketCount(1));
+        assertEquals(0, metrics.getBucketCount(2));
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package org.apache.skywalking.apm.plugin.couchbase.v76.support;
+
+import org.apache.skywalking.apm.plugin.couchbase.v76.CouchbasePluginConfig;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class QueryRowStreamTest {
+
+    private long rowStreamTimeoutMs;
+
+    @Before
+    public void shortenTimeout() {
+        rowStreamTimeoutMs = CouchbasePluginConfig.Plugin.Couchbase.ROW_STREAM_TIMEOUT_MS;
+        CouchbasePluginConfig.Plugin.Couchbase.ROW_STREAM_TIMEOUT_MS = 1;
+    }
+
+    @After
+    public void restoreTimeout() {
+        CouchbasePluginConfig.Plugin.Couchbase.ROW_STREAM_TIMEOUT_MS = rowStreamTimeoutMs;
+    }
+
+    @Test
+    public void unsubscribedResultIsAbandonedOnce() throws InterruptedException {
+        RecordingSpan span = new RecordingSpan();
+        new QueryRowStream(span.span, System.nanoTime());
+        Thread.sleep(5);
+        QueryRowStream.Sweeper.sweep();
+        QueryRowStream.Sweeper.sweep();
+        assertEquals("true", span.tag(CouchbaseTags.QUERY_ABANDONED));
+        assertEquals(1, span.asyncFinishes);
+    }
+
+    @Test
+    public void subscribedResultIsNotAbandoned() throws InterruptedException {
+        RecordingSpan span = new RecordingSpan();
+        QueryRowStream stream = new QueryRowStream(span.span, System.nanoTime());
+        stream.wrapMetaData(Mono.never()).subscribe();
+        Thread.sleep(5);
+        QueryRowStream.Sweeper.sweep();
+        assertNull(span.tag(CouchbaseTags.QUERY_ABANDONED));
+        assertEquals(0, span.asyncFinishes);
+    }
+
+    @Test
+    public void metaDataFinishesTheSpanWhenRowsAreNotStreamed() throws InterruptedException {
+        RecordingSpan span = new RecordingSpan();
+        QueryRowStream stream = new QueryRowStream(span.span, System.nanoTime());
+        stream.wrapMetaData(Mono.just("metadata")).block();
+        Thread.sleep(5);
+        QueryRowStream.Sweeper.sweep();
+        assertEquals("0", span.tag(CouchbaseTags.QUERY_ROWS));
+        assertNull(span.tag(CouchbaseTags.QUERY_ABANDONED));
+        assertEquals(1, span.asyncFinishes);
+    }
+
+    @Test
+    public void streamedRowsFinishTheSpan() {
+        RecordingSpan span = new RecordingSpan();
+        QueryRowStream stream = new QueryRowStream(span.span, System.nanoTime());
+        stream.wrap(Flux.just("a", "b", "c")).blockLast();
+        stream.wrapMetaData(Mono.just("metadata")).block();
+        assertEquals("3", span.tag(CouchbaseTags.QUERY_ROWS));
+        assertEquals("0", span.tag(CouchbaseTags.QUERY_BYTES));
+        assertEquals(1, span.asyncFinishes);
+    }
+
+    @Test
+    public void rowsCanOnlyBeWrappedOnce() {
+        RecordingSpan span = new RecordingSpan();
+        QueryRowStream stream = new QueryRowStream(span.span, System.nanoTime());
+        Flux<String> rows = Flux.just("a");
+        stream.wrap(rows);
+        assertEquals(rows, stream.wrap(rows));
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package org.apache.skywalking.apm.plugin.couchbase.v76.support;
+
+import org.apache.skywalking.apm.agent.core.context.tag.AbstractTag;
+import org.apache.skywalking.apm.agent.core.context.trace.AbstractSpan;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Span recording its tags, logged errors and async finishes, for the classes finishing spans they did not create.
+ */
+final class RecordingSpan implements InvocationHandler {
+
+    final Map<String, String> tags = new HashMap<>();
+    final List<Throwable> logged = new ArrayList<>();
+    int asyncFinishes;
+
+    final AbstractSpan span = (AbstractSpan) Proxy.newProxyInstance(
+        AbstractSpan.class.getClassLoader(), new Class<?>[] {AbstractSpan.class}, this);
+
+    String tag(AbstractTag<?> tag) {
+        return tags.get(tag.key());
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) {
+        switch (method.getName()) {
+            case "tag":
+                if (args.length == 2) {
+                    String key = args[0] instanceof AbstractTag ? ((AbstractTag<?>) args[0]).key() : String.valueOf(args[0]);
+                    tags.put(key, String.valueOf(args[1]));
+                }
+                break;
+            case "log":
+                if (args.length == 1 && args[0] instanceof Throwable) {
+                    logged.add((Throwable) args[0]);
+                }
+                break;
+            case "asyncFinish":
+                asyncFinishes++;
+                break;
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "equals":
+                return proxy == args[0];
+            case "toString":
+                return "RecordingSpan" + tags;
+            default:
+        }
+        Class<?> type = method.getReturnType();
+        if (type.isInstance(proxy)) {
+            return proxy;
+        } else if (type == boolean.class) {
+            return false;
+        } else if (type == int.class) {
+            return 0;
+        } else if (type == long.class) {
+            return 0L;
+        }
+        return null;
+    }
+}
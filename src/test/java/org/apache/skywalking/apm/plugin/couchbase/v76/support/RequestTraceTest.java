@@ -0,0 +1,54 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package org.apache.skywalking.apm.plugin.couchbase.v76.support;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class RequestTraceTest {
+
+    @Test
+    public void onlyRequestsOfTracedOperationsHaveATrace() {
+        assertNull(RequestTrace.of(null));
+        assertNull(RequestTrace.of(new Object()));
+        assertNull(RequestTrace.of(new StubInstance()));
+        assertNull(RequestTrace.of(new StubInstance("other state")));
+        RequestTrace trace = new RequestTrace(new RecordingSpan().span);
+        assertSame(trace, RequestTrace.of(new StubInstance(trace)));
+    }
+
+    @Test
+    public void keepsTheSpanOfTheOperation() {
+        RecordingSpan span = new RecordingSpan();
+        assertSame(span.span, new RequestTrace(span.span).getSpan());
+    }
+
+    @Test
+    public void sumsTheBackoffOfTheRetries() {
+        RequestTrace trace = new RequestTrace(new RecordingSpan().span);
+        assertEquals(0, trace.getBackoffNanos());
+        trace.addBackoff(1_000);
+        trace.addBackoff(2_500);
+        assertEquals(3_500, trace.getBackoffNanos());
+    }
+}
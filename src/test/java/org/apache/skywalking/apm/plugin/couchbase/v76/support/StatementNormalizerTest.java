@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.skywalking.apm.plugin.couchbase.v76.support;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class StatementNormalizerTest {
+
+    @Test
+    public void replacesStringAndNumericLiterals() {
+        assertEquals(
+            "SELECT * FROM `travel-sample` WHERE type = ? AND stops = ? AND ratio > ? LIMIT ?",
+            StatementNormalizer.normalizeText(
+                "SELECT * FROM `travel-sample` WHERE type = 'airline' AND stops = 0 AND ratio > 1.5e3 LIMIT 10"));
+    }
+
+    @Test
+    public void replacesQuotedStringsWithEscapes() {
+        assertEquals(
+            "SELECT * FROM b WHERE name = ? AND city = ?",
+            StatementNormalizer.normalizeText("SELECT * FROM b WHERE name = 'it''s' AND city = \"San \\\"Fran\\\"\""));
+    }
+
+    @Test
+    public void keepsQuotedIdentifiersAndParameters() {
+        assertEquals(
+            "SELECT `order-1`.`2026` FROM `bucket-42` WHERE id = $1 AND type = $type AND v1 = ?",
+            StatementNormalizer.normalizeText(
+                "SELECT `order-1`.`2026` FROM `bucket-42` WHERE id = $1 AND type = $type AND v1 = 7"));
+    }
+
+    @Test
+    public void collapsesWhitespace() {
+        assertEquals(
+            "SELECT a FROM b WHERE c = ?",
+            StatementNormalizer.normalizeText("  SELECT a\n\tFROM   b\r\n WHERE c =  1  "));
+    }
+
+    @Test
+    public void foldsLiteralArrays() {
+        assertEquals(
+            "SELECT * FROM hotel WHERE city IN [?] AND id IN [?]",
+            StatementNormalizer.normalizeText(
+                "SELECT * FROM hotel WHERE city IN ['Paris', 'Nice' , 'Lyon'] AND id IN [1,2,3,4]"));
+    }
+
+    @Test
+    public void fingerprintIsStableAcrossLiterals() {
+        StatementNormalizer.NormalizedStatement first =
+            StatementNormalizer.normalize("SELECT * FROM hotel WHERE city IN ['Paris', 'Nice'] AND stars > 3");
+        StatementNormalizer.NormalizedStatement second =
+            StatementNormalizer.normalize("SELECT *  FROM hotel WHERE city IN ['Lyon'] AND stars > 4");
+        assertEquals(first.getStatement(), second.getStatement());
+        assertEquals(first.getFingerprint(), second.getFingerprint());
+        assertEquals(Fingerprint.of("SELECT * FROM hotel WHERE city IN [?] AND stars > ?"), first.getFingerprint());
+    }
+
+    @Test
+    public void fingerprintDiffersAcrossShapes() {
+        assertNotEquals(
+            StatementNormalizer.normalize("SELECT * FROM hotel WHERE stars > 3").getFingerprint(),
+            StatementNormalizer.normalize("SELECT * FROM hotel WHERE stars < 3").getFingerprint());
+    }
+}
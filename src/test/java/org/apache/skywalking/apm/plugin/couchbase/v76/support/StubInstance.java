@@ -0,0 +1,47 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package org.apache.skywalking.apm.plugin.couchbase.v76.support;
+
+import org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance.EnhancedInstance;
+
+/**
+ * Enhanced instance with a plain dynamic field, standing for an SDK instance which cannot be built in tests.
+ */
+final class StubInstance implements EnhancedInstance {
+
+    private Object dynamicField;
+
+    StubInstance() {
+    }
+
+    StubInstance(Object dynamicField) {
+        this.dynamicField = dynamicField;
+    }
+
+    @Override
+    public Object getSkyWalkingDynamicField() {
+        return dynamicField;
+    }
+
+    @Override
+    public void setSkyWalkingDynamicField(Object value) {
+        this.dynamicField = value;
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.skywalking.apm.plugin.couchbase.v76.support;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TokenBucketTest {
+
+    @Test
+    public void burstIsOneSecondOfPermits() {
+        TokenBucket bucket = new TokenBucket(50);
+        long start = System.nanoTime();
+        int acquired = drain(bucket);
+        long elapsedNanos = System.nanoTime() - start;
+        assertTrue("acquired " + acquired, acquired >= 50);
+        assertTrue("acquired " + acquired, acquired <= 50 + permitsIn(elapsedNanos, 50) + 1);
+    }
+
+    @Test
+    public void refillsAtTheConfiguredRate() throws InterruptedException {
+        TokenBucket bucket = new TokenBucket(100);
+        drain(bucket);
+        long start = System.nanoTime();
+        Thread.sleep(200);
+        int acquired = drain(bucket);
+        long elapsedNanos = System.nanoTime() - start;
+        assertTrue("acquired " + acquired, acquired >= 19);
+        assertTrue("acquired " + acquired, acquired <= permitsIn(elapsedNanos, 100) + 1);
+    }
+
+    @Test
+    public void idleTimeDoesNotGrowTheBurst() throws InterruptedException {
+        TokenBucket bucket = new TokenBucket(20);
+        Thread.sleep(300);
+        long start = System.nanoTime();
+        int acquired = drain(bucket);
+        long elapsedNanos = System.nanoTime() - start;
+        assertTrue("acquired " + acquired, acquired <= 20 + permitsIn(elapsedNanos, 20) + 1);
+    }
+
+    @Test
+    public void noPermitsWithoutRate() {
+        assertFalse(new TokenBucket(0).tryAcquire());
+        assertFalse(new TokenBucket(-1).tryAcquire());
+    }
+
+    @Test
+    public void singlePermitPerSecond() {
+        TokenBucket bucket = new TokenBucket(1);
+        assertTrue(bucket.tryAcquire());
+        assertEquals(0, drain(bucket));
+    }
+
+    private static int drain(TokenBucket bucket) {
+        int acquired = 0;
+        while (bucket.tryAcquire()) {
+            acquired++;
+        }
+        return acquired;
+    }
+
+    private static long permitsIn(long nanos, int permitsPerSecond) {
+        return nanos * permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package org.apache.skywalking.apm.plugin.couchbase.v76.support;
+
+import org.apache.skywalking.apm.plugin.couchbase.v76.CouchbasePluginConfig;
+import org.junit.After;
+import org.junit.Test;
+import org.reactivestreams.Subscription;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
+import reactor.util.context.Context;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Terminal signals of {@link TracingSubscriber} and {@link ScanSubscriber}. Stub instances are not collections, so the
+ * metrics of an operation are shared by all of them; the tests compare the calls recorded before and after.
+ */
+public class TracingSubscriberTest {
+
+    @After
+    public void restoreConfig() {
+        CouchbasePluginConfig.Plugin.Couchbase.OPERATION_METRICS = true;
+    }
+
+    @Test
+    public void completionFinishesTheSpanAndRecordsTheCallOnce() {
+        RecordingSpan span = new RecordingSpan();
+        StubInstance collection = new StubInstance();
+        OperationDescriptor get = Operations.descriptor("get");
+        OperationMetrics metrics = CouchbaseInstanceState.metricsOf(collection, get);
+        long calls = metrics.getCalls();
+        long errors = metrics.getErrors();
+        Downstream downstream = new Downstream(Long.MAX_VALUE);
+        TracingSubscriber<String> subscriber = new TracingSubscriber<>(downstream, Context.empty(), span.span, collection, get, "doc", null);
+        Flux.just("value").subscribe(subscriber);
+        subscriber.cancel();
+        assertEquals(1, downstream.items.size());
+        assertEquals(1, span.asyncFinishes);
+        assertNull(span.tag(CouchbaseTags.DB_CANCELLED));
+        assertEquals(calls + 1, metrics.getCalls());
+        assertEquals(errors, metrics.getErrors());
+    }
+
+    @Test
+    public void cancellationFinishesTheSpanAsCancelled() {
+        RecordingSpan span = new RecordingSpan();
+        StubInstance collection = new StubInstance();
+        OperationDescriptor get = Operations.descriptor("get");
+        long calls = CouchbaseInstanceState.metricsOf(collection, get).getCalls();
+        TracingSubscriber<String> subscriber = new TracingSubscriber<>(new Downstream(0), Context.empty(), span.span, collection, get, "doc", null);
+        Flux.just("value").subscribe(subscriber);
+        subscriber.cancel();
+        subscriber.cancel();
+        assertEquals("true", span.tag(CouchbaseTags.DB_CANCELLED));
+        assertEquals(1, span.asyncFinishes);
+        assertEquals(calls + 1, CouchbaseInstanceState.metricsOf(collection, get).getCalls());
+    }
+
+    @Test
+    public void unsampledSubscriptionsStillRecordMetrics() {
+        StubInstance collection = new StubInstance();
+        OperationDescriptor get = Operations.descriptor("get");
+        long calls = CouchbaseInstanceState.metricsOf(collection, get).getCalls();
+        Flux.just("value").subscribe(new TracingSubscriber<>(new Downstream(Long.MAX_VALUE), Context.empty(), null, collection, get, "doc", null));
+        assertEquals(calls + 1, CouchbaseInstanceState.metricsOf(collection, get).getCalls());
+    }
+
+    @Test
+    public void errorIsLoggedOnTheSpan() {
+        CouchbasePluginConfig.Plugin.Couchbase.OPERATION_METRICS = false;
+        RecordingSpan span = new RecordingSpan();
+        Downstream downstream = new Downstream(Long.MAX_VALUE);
+        IllegalStateException failure = new IllegalStateException("failed");
+        Flux.<String>error(failure).subscribe(new TracingSubscriber<>(downstream, Context.empty(), span.span, new StubInstance(), Operations.descriptor("get"), "doc", null));
+        assertEquals(1, span.logged.size());
+        assertEquals(1, span.asyncFinishes);
+        assertEquals(failure, downstream.error);
+    }
+
+    @Test
+    public void scanCompletionTagsItemsAndRecordsTheCallOnce() {
+        RecordingSpan span = new RecordingSpan();
+        StubInstance collection = new StubInstance();
+        OperationDescriptor scan = Operations.descriptor("scan");
+        long calls = CouchbaseInstanceState.metricsOf(collection, scan).getCalls();
+        ScanSubscriber<String> subscriber = new ScanSubscriber<>(new Downstream(Long.MAX_VALUE), Context.empty(), span.span, collection, scan, null);
+        Flux.just("a", "b").subscribe(subscriber);
+        subscriber.cancel();
+        assertEquals("2", span.tag(CouchbaseTags.SCAN_ITEMS));
+        assertNull(span.tag(CouchbaseTags.DB_CANCELLED));
+        assertEquals(1, span.asyncFinishes);
+        assertEquals(calls + 1, CouchbaseInstanceState.metricsOf(collection, scan).getCalls());
+    }
+
+    @Test
+    public void scanCancellationIsTagged() {
+        RecordingSpan span = new RecordingSpan();
+        StubInstance collection = new StubInstance();
+        OperationDescriptor scan = Operations.descriptor("scan");
+        long calls = CouchbaseInstanceState.metricsOf(collection, scan).getCalls();
+        ScanSubscriber<String> subscriber = new ScanSubscriber<>(new Downstream(1), Context.empty(), span.span, collection, scan, null);
+        Flux.just("a", "b").subscribe(subscriber);
+        subscriber.cancel();
+        assertEquals("1", span.tag(CouchbaseTags.SCAN_ITEMS));
+        assertEquals("true", span.tag(CouchbaseTags.DB_CANCELLED));
+        assertEquals(1, span.asyncFinishes);
+        assertEquals(calls + 1, CouchbaseInstanceState.metricsOf(collection, scan).getCalls());
+    }
+
+    private static final class Downstream extends BaseSubscriber<String> {
+        private final long demand;
+        private final List<String> items = new ArrayList<>();
+        private Throwable error;
+
+        private Downstream(long demand) {
+            this.demand = demand;
+        }
+
+        @Override
+        protected void hookOnSubscribe(Subscription subscription) {
+            if (demand > 0) {
+                subscription.request(demand);
+            }
+        }
+
+        @Override
+        protected void hookOnNext(String value) {
+            items.add(value);
+        }
+
+        @Override
+        protected void hookOnError(Throwable throwable) {
+            error = throwable;
+        }
+    }
+}